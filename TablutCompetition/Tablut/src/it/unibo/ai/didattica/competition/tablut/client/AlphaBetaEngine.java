@@ -1,28 +1,25 @@
 package it.unibo.ai.didattica.competition.tablut.client;
 
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.LongAdder;
 
 import it.unibo.ai.didattica.competition.tablut.domain.Action;
 import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
 import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
 
-public class AlphaBetaEngine {
+public class AlphaBetaEngine implements SearchEngine {
 
     private static final int BOARD_SIZE = 9;
+    private static final int BOARD_SQUARES = BOARD_SIZE * BOARD_SIZE;
 
     // --- VALORI ESTREMI E MARGINI ---
-    private static final int MAX_VALUE = 100000;
-    private static final int MIN_VALUE = -100000;
-    private static final int HEURISTIC_MAX = 50000;
-    private static final int HEURISTIC_MIN = -50000;
+    private static final int MAX_VALUE = HeuristicEvaluator.MAX_VALUE;
+    private static final int MIN_VALUE = HeuristicEvaluator.MIN_VALUE;
+    private static final int HEURISTIC_MAX = HeuristicEvaluator.HEURISTIC_MAX;
+    private static final int HEURISTIC_MIN = HeuristicEvaluator.HEURISTIC_MIN;
     private static final int INITIAL_ALPHA = MIN_VALUE - 1000;
     private static final int INITIAL_BETA = MAX_VALUE + 1000;
 
@@ -32,108 +29,776 @@ public class AlphaBetaEngine {
      */
     private static final int MAX_QUIESCENCE_DEPTH = 2;
 
+    /**
+     * Profondità massima dell'iterative deepening: dimensiona i buffer di mosse per ply.
+     */
+    private static final int MAX_SEARCH_DEPTH = 64;
+    private static final int MAX_PLY = MAX_SEARCH_DEPTH + MAX_QUIESCENCE_DEPTH + 2;
+
+    private static final int NO_MOVE = FastTablutState.NO_MOVE;
+
+    // --- INTERRUZIONE DELLA RICERCA ---
+    // Nodi visitati da un thread tra due letture del flag di stop
+    private static final int STOP_CHECK_INTERVAL = 1024;
+
+    // --- FINESTRE DI ASPIRAZIONE ---
+    // Semi-ampiezza iniziale (circa due pedine con i pesi iniziali) e fattore di allargamento
+    private static final int DEFAULT_ASPIRATION_WINDOW = 150;
+    private static final int DEFAULT_ASPIRATION_WIDENING = 4;
+    private static final int ASPIRATION_MIN_DEPTH = 3;
+
+    // --- KILLER E HISTORY ---
+    // Oltre questo valore tutta la tabella di storia viene dimezzata
+    private static final int HISTORY_LIMIT = 1 << 24;
+    private static final int KILLER_SCORE = Integer.MAX_VALUE;
+
+    // --- LATE MOVE REDUCTIONS ---
+    private static final int DEFAULT_LMR_MIN_DEPTH = 3;
+    private static final int DEFAULT_LMR_MOVE_INDEX = 4;
+    private static final int DEFAULT_LMR_REDUCTION = 1;
+
+    // --- NULL MOVE PRUNING ---
+    private static final int DEFAULT_NULL_MOVE_MIN_DEPTH = 3;
+    private static final int DEFAULT_NULL_MOVE_REDUCTION = 2;
+    // Sotto questo numero di pedine di chi muove il rischio di zugzwang rende il passo inaffidabile
+    private static final int NULL_MOVE_MIN_PIECES = 3;
+
+    // --- PONDERING ---
+    // Limite di sicurezza di una ricerca sul tempo dell'avversario, mai raggiunto in partita
+    private static final long PONDER_MAX_MILLIS = 10 * 60 * 1000L;
+
+    // --- SOLUTORE DI VITTORIE FORZATE (df-pn) ---
+    private static final int DEFAULT_SOLVER_ATTACKER_MOVES = 3;
+    private static final long DEFAULT_SOLVER_MAX_NODES = 100_000L;
+    private static final int SOLVER_TABLE_BITS = 18;
+
+    // --- FUTILITY PRUNING E RAZORING ---
+    // Margini in pedine (vedi pawnValue), moltiplicati per la profondità residua
+    private static final int FRONTIER_MAX_DEPTH = 2;
+    private static final int DEFAULT_FUTILITY_MARGIN_PAWNS = 3;
+    private static final int DEFAULT_RAZOR_MARGIN_PAWNS = 5;
+
 
     // VARIABILE PER I PESI (INIETTABILI)
-    private final double[] weights;
+    private final HeuristicEvaluator evaluator;
 
     // --- TRANSPOSITION TABLE e Helper Classes ---
-    private Map<Long, TranspositionEntry> transpositionTable;
-    private static final int EXACT_SCORE = 0;
-    private static final int LOWER_BOUND = 1;
-    private static final int UPPER_BOUND = 2;
-
-    // Array statico per le 8 direzioni adiacenti (incluse diagonali)
-    private static final int[][] ADJACENT_DIRECTIONS = {
-            {-1, -1}, {-1, 0}, {-1, 1},
-            { 0, -1},          { 0, 1},
-            { 1, -1}, { 1, 0}, { 1, 1}
-    };
-
-    private class TranspositionEntry {
-        final int score, depth, nodeType;
-        final Action bestMove; // Mossa che ha generato questo punteggio
-
-        public TranspositionEntry(int score, int depth, int nodeType, Action bestMove) {
-            this.score = score; this.depth = depth; this.nodeType = nodeType;
-            this.bestMove = bestMove; // Salva la mossa
-        }
-        public int getScore() { return score; }
-        public int getDepth() { return depth; }
-        public Action getBestMove() { return bestMove; } // Getter per la mossa
-    }
+    // Condivisa da tutti i task della radice: è lock-free e a dimensione fissa
+    private final TranspositionTable transpositionTable;
+    // Valutazioni statiche già calcolate (ordinamento, stand-pat, foglie, trasposizioni)
+    private final EvaluationCache evaluationCache = new EvaluationCache(EvaluationCache.DEFAULT_SIZE_MB);
+    private static final int EXACT_SCORE = TranspositionTable.EXACT_SCORE;
+    private static final int LOWER_BOUND = TranspositionTable.LOWER_BOUND;
+    private static final int UPPER_BOUND = TranspositionTable.UPPER_BOUND;
 
     public class AlphaBetaResult {
         private final int score;
-        private final Action action;
-        public AlphaBetaResult(int score, Action action) {
-            this.score = score; this.action = action;
+        private final int move;
+        public AlphaBetaResult(int score, int move) {
+            this.score = score; this.move = move;
         }
-        public AlphaBetaResult(int score) { this(score, null); }
+        public AlphaBetaResult(int score) { this(score, NO_MOVE); }
         public int getScore() { return score; }
-        public Action getAction() { return action; }
+        public int getMove() { return move; }
+    }
+
+    /**
+     * Segnale con cui i nodi risalgono fino alla radice quando la ricerca è fermata.
+     * Un'unica istanza preallocata, senza stack trace: lanciarla non costa un'allocazione.
+     */
+    private static final class SearchAborted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private SearchAborted() {
+            super("Ricerca interrotta", null, false, false);
+        }
+    }
+
+    private static final SearchAborted SEARCH_ABORTED = new SearchAborted();
+
+    /**
+     * Risultato di una ricerca alla radice: mossa scelta e profondità completata, che il
+     * pondering usa per la ripresa. Tra i thread Lazy SMP conta la profondità completata più alta.
+     */
+    private static final class RootSearchResult {
+        private int depth = 0;
+        private int move;
+        private int score;
+
+        RootSearchResult(int fallbackMove) { this.move = fallbackMove; }
+
+        RootSearchResult(int completedDepth, int bestMove, int bestScore) {
+            this.depth = completedDepth; this.move = bestMove; this.score = bestScore;
+        }
+
+        synchronized void offer(int completedDepth, int bestMove, int bestScore) {
+            if (completedDepth > depth) {
+                depth = completedDepth;
+                move = bestMove;
+                score = bestScore;
+            }
+        }
+
+        synchronized int getMove() { return move; }
+
+        synchronized int getDepth() { return depth; }
     }
 
-    private class ActionScore {
-        final Action action;
+    /**
+     * Ripresa dell'iterative deepening dopo un ponder hit: profondità da cui ripartire,
+     * mossa e punteggio esatto trovati in TT per la profondità precedente.
+     */
+    private static final class ResumePoint {
+        final int depth;
+        final int move;
         final int score;
-        public ActionScore(Action action, int score) {
-            this.action = action; this.score = score;
+
+        ResumePoint(int depth, int move, int score) {
+            this.depth = depth; this.move = move; this.score = score;
+        }
+    }
+
+    /**
+     * Buffer di ricerca riusati da un singolo thread: una lista di mosse per ply,
+     * così i nodi interni non allocano liste, più le tabelle per l'ordinamento delle mosse.
+     * I nodi interni restituiscono solo il punteggio: la loro mossa migliore resta in bestMoves.
+     */
+    private static final class SearchContext {
+        final int[][] moves = new int[MAX_PLY][FastTablutState.MAX_MOVES];
+        final int[][] moveScores = new int[MAX_PLY][FastTablutState.MAX_MOVES];
+        // Due killer per ply: mosse tranquille che hanno provocato un taglio a quel ply
+        final int[][] killers = new int[MAX_PLY][2];
+        // Storia [from * 81 + to]: +depth^2 a ogni taglio di una mossa tranquilla
+        final int[] history = new int[BOARD_SQUARES * BOARD_SQUARES];
+        final MovePicker[] pickers = new MovePicker[MAX_PLY];
+        // true se la posizione a quel ply è stata raggiunta con una mossa nulla
+        final boolean[] nullMoveAt = new boolean[MAX_PLY];
+        // Mossa migliore dell'ultimo nodo cercato a quel ply (NO_MOVE se non ce n'è una)
+        final int[] bestMoves = new int[MAX_PLY];
+        // Punteggi statici dei figli per l'ordinamento alla radice
+        final int[] rootScores = new int[FastTablutState.MAX_MOVES];
+        int searchId = -1;
+        int historyEpoch = 0;
+        // Visite mancanti al prossimo controllo del flag di stop
+        int stopCountdown = STOP_CHECK_INTERVAL;
+
+        SearchContext() {
+            for (int ply = 0; ply < MAX_PLY; ply++) pickers[ply] = new MovePicker();
+        }
+
+        int result(int ply, int score, int move) {
+            bestMoves[ply] = move;
+            return score;
         }
     }
 
-    private class ActionScoreComparator implements Comparator<ActionScore> {
-        private final Turn playerToMove;
-        public ActionScoreComparator(Turn playerToMove) { this.playerToMove = playerToMove; }
+    /**
+     * Generazione a fasi delle mosse di un nodo interno: mossa della TT, catture (e vittorie
+     * immediate), killer, mosse tranquille in ordine di storia. Ogni fase è generata solo se
+     * la precedente non ha prodotto un taglio; le tranquille sono estratte per selezione,
+     * una alla volta. TT e killer vengono da altre posizioni: vanno validate con makeMove.
+     */
+    private static final class MovePicker {
+        private static final int STAGE_TT = 0;
+        private static final int STAGE_CAPTURES_INIT = 1;
+        private static final int STAGE_CAPTURES = 2;
+        private static final int STAGE_KILLERS = 3;
+        private static final int STAGE_QUIETS_INIT = 4;
+        private static final int STAGE_QUIETS = 5;
+        private static final int STAGE_DONE = 6;
+
+        private final int[] captures = new int[FastTablutState.MAX_MOVES];
+        private FastTablutState state;
+        private SearchContext ctx;
+        private int ply;
+        private int ttMove;
+        private int stage;
+        private int index;
+        private int count;
+
+        void init(FastTablutState state, int ttMove, int ply, SearchContext ctx) {
+            this.state = state;
+            this.ttMove = ttMove;
+            this.ply = ply;
+            this.ctx = ctx;
+            this.stage = STAGE_TT;
+        }
+
+        /**
+         * true se l'ultima mossa restituita viene dalla fase delle tranquille ordinate per storia.
+         */
+        boolean inQuietStage() {
+            return stage == STAGE_QUIETS;
+        }
+
+        /**
+         * @return la prossima mossa candidata, oppure NO_MOVE quando sono finite.
+         * Le fasi sono i case dello switch in sequenza: una fase esaurita prosegue nella
+         * successiva senza uscire, da qui la soppressione dell'avviso di fall-through.
+         */
+        @SuppressWarnings("fallthrough")
+        int next() {
+            switch (stage) {
+                case STAGE_TT:
+                    stage = STAGE_CAPTURES_INIT;
+                    if (ttMove != NO_MOVE) return ttMove;
+                    // fall through
+                case STAGE_CAPTURES_INIT:
+                    count = state.generateCaptureMoves(captures, 0);
+                    index = 0;
+                    stage = STAGE_CAPTURES;
+                    // fall through
+                case STAGE_CAPTURES:
+                    while (index < count) {
+                        int move = captures[index++];
+                        if (move != ttMove) return move;
+                    }
+                    index = 0;
+                    stage = STAGE_KILLERS;
+                    // fall through
+                case STAGE_KILLERS:
+                    while (index < 2) {
+                        int killer = ctx.killers[ply][index++];
+                        if (killer != NO_MOVE && killer != ttMove
+                                && state.isLegalMove(killer) && !state.isCaptureMove(killer)) {
+                            return killer;
+                        }
+                    }
+                    stage = STAGE_QUIETS_INIT;
+                    // fall through
+                case STAGE_QUIETS_INIT:
+                    generateQuiets();
+                    index = 0;
+                    stage = STAGE_QUIETS;
+                    // fall through
+                case STAGE_QUIETS:
+                    if (index < count) return selectBestQuiet();
+                    stage = STAGE_DONE;
+                    return NO_MOVE;
+                default:
+                    return NO_MOVE;
+            }
+        }
+
+        // Le tranquille restanti (senza TT, killer e catture già proposte) con il loro punteggio di storia
+        private void generateQuiets() {
+            int[] moves = ctx.moves[ply];
+            int[] scores = ctx.moveScores[ply];
+            int[] history = ctx.history;
+            int killer0 = ctx.killers[ply][0];
+            int killer1 = ctx.killers[ply][1];
+
+            int generated = state.generateMoves(moves, 0);
+            count = 0;
+            for (int i = 0; i < generated; i++) {
+                int move = moves[i];
+                if (move == ttMove || move == killer0 || move == killer1 || state.isCaptureMove(move)) continue;
+                moves[count] = move;
+                scores[count] = history[FastTablutState.moveFrom(move) * BOARD_SQUARES + FastTablutState.moveTo(move)];
+                count++;
+            }
+        }
+
+        private int selectBestQuiet() {
+            int[] moves = ctx.moves[ply];
+            int[] scores = ctx.moveScores[ply];
+
+            int best = index;
+            for (int i = index + 1; i < count; i++) {
+                if (scores[i] > scores[best]) best = i;
+            }
+            int move = moves[best];
+            int score = scores[best];
+            moves[best] = moves[index];
+            scores[best] = scores[index];
+            moves[index] = move;
+            scores[index] = score;
+            index++;
+            return move;
+        }
+    }
+
+    /**
+     * Nodo YBWC in cui i fratelli minori sono stati distribuiti sul pool.
+     * La finestra viene letta dai task al momento dell'avvio, quindi i fratelli partiti
+     * più tardi beneficiano dei limiti già migliorati; aborted segnala un taglio.
+     */
+    private static final class SplitPoint {
+        final SplitPoint parent;
+        volatile int alpha;
+        volatile int beta;
+        volatile boolean aborted;
+
+        SplitPoint(SplitPoint parent, int alpha, int beta) {
+            this.parent = parent; this.alpha = alpha; this.beta = beta;
+        }
+
+        boolean isAborted() {
+            for (SplitPoint sp = this; sp != null; sp = sp.parent) {
+                if (sp.aborted) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Fratello minore cercato in parallelo su una copia privata dello stato (mossa già applicata).
+     * Restituisce null se il nodo padre (o un antenato) ha già ottenuto un taglio.
+     */
+    private final class YbwcTask extends RecursiveTask<AlphaBetaResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final FastTablutState state;
+        private final SplitPoint splitPoint;
+        private final int depthRemaining;
+        private final int ply;
+
+        YbwcTask(FastTablutState state, SplitPoint splitPoint, int depthRemaining, int ply) {
+            this.state = state; this.splitPoint = splitPoint;
+            this.depthRemaining = depthRemaining; this.ply = ply;
+        }
 
         @Override
-        public int compare(ActionScore a, ActionScore b) {
-            return playerToMove.equals(Turn.WHITE) ? Integer.compare(b.score, a.score) : Integer.compare(a.score, b.score);
+        protected AlphaBetaResult compute() {
+            if (splitPoint.isAborted()) return null;
+            // Durante un join il worker può eseguire altri task: i buffer non possono essere ThreadLocal
+            SearchContext ctx = acquireContext();
+            try {
+                return ybwcSearch(state, splitPoint.alpha, splitPoint.beta, depthRemaining, ply, splitPoint, ctx);
+            } finally {
+                releaseContext(ctx);
+            }
         }
     }
 
+    /**
+     * Strategia di parallelizzazione della ricerca.
+     * ROOT_SPLIT: un task per mossa della radice (default storico).
+     * LAZY_SMP: thread indipendenti sull'intero albero che condividono solo la TT.
+     * YBWC: Young Brothers Wait su ForkJoinPool, split anche nei nodi interni.
+     */
+    public enum SearchMode { ROOT_SPLIT, LAZY_SMP, YBWC }
+
     private final Turn player;
+    private volatile SearchMode searchMode = SearchMode.ROOT_SPLIT;
+    private volatile boolean principalVariationSearch = true;
+    private volatile int aspirationWindow = DEFAULT_ASPIRATION_WINDOW;
+    private volatile int aspirationWidening = DEFAULT_ASPIRATION_WIDENING;
+    private volatile int lmrMinDepth = DEFAULT_LMR_MIN_DEPTH;
+    private volatile int lmrMoveIndex = DEFAULT_LMR_MOVE_INDEX;
+    private volatile int lmrReduction = DEFAULT_LMR_REDUCTION;
+    private volatile int nullMoveMinDepth = DEFAULT_NULL_MOVE_MIN_DEPTH;
+    private volatile int nullMoveReduction = DEFAULT_NULL_MOVE_REDUCTION;
+    private final LongAdder searchedNodes = new LongAdder();
+    private final LongAdder nullMoveCutoffs = new LongAdder();
+    private volatile int futilityMarginPawns = DEFAULT_FUTILITY_MARGIN_PAWNS;
+    private volatile int razorMarginPawns = DEFAULT_RAZOR_MARGIN_PAWNS;
+    private final LongAdder futilityPrunes = new LongAdder();
+    private final LongAdder razorCutoffs = new LongAdder();
+    // Valore di una pedina nella scala della valutazione: weights[7] * max(|weights[9]|, |weights[10]|)
+    private final int pawnValue;
+    private final LongAdder reducedSearches = new LongAdder();
+    private final LongAdder reductionResearches = new LongAdder();
+    // I contesti sono per thread: li si allinea alla ricerca corrente quando vengono presi
+    private volatile int searchId = 0;
+    // Alzato dal timer (o da stop()): i nodi lo leggono ogni STOP_CHECK_INTERVAL visite
+    private volatile boolean stopRequested = false;
+    private final ScheduledExecutorService stopScheduler;
+    // Pondering: usati solo dal thread dell'agente (startPondering / getBestMove)
+    private final ExecutorService ponderExecutor;
+    private Future<RootSearchResult> ponderTask;
+    private FastTablutState ponderState;
+    private long expectedPonderKey = 0L;
+    // Profondità completata dal pondering sulla radice avversaria (0 se nessuna)
+    private int expectedPonderDepth = 0;
+    // Solutore df-pn: usato solo dal thread che chiama getBestMove
+    private final ProofNumberSolver solver = new ProofNumberSolver(SOLVER_TABLE_BITS);
+    private volatile int solverAttackerMoves = DEFAULT_SOLVER_ATTACKER_MOVES;
+    private volatile long solverMaxNodes = DEFAULT_SOLVER_MAX_NODES;
+    private volatile int historyEpoch = 0;
     private final ExecutorService executorService;
+    private final ThreadLocal<SearchContext> searchContexts = ThreadLocal.withInitial(SearchContext::new);
+    private final ForkJoinPool forkJoinPool;
+    private final ConcurrentLinkedQueue<SearchContext> ybwcContexts = new ConcurrentLinkedQueue<>();
     private static final int N_CPUS = Runtime.getRuntime().availableProcessors();
 
 
     public AlphaBetaEngine(Turn player, double[] weights) {
+        this(player, weights, TranspositionTable.DEFAULT_SIZE_MB);
+    }
+
+    public AlphaBetaEngine(Turn player, double[] weights, int transpositionTableSizeMb) {
         this.player = player;
-        this.weights = weights; // Usa i pesi iniettati
-        this.transpositionTable = new HashMap<>();
+        this.evaluator = new HeuristicEvaluator(weights); // Usa i pesi iniettati
+        this.pawnValue = evaluator.getPawnValue();
+        this.transpositionTable = new TranspositionTable(transpositionTableSizeMb);
         this.executorService = Executors.newFixedThreadPool(N_CPUS);
+        this.forkJoinPool = new ForkJoinPool(N_CPUS);
+        this.stopScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread timer = new Thread(runnable, "search-stop-timer");
+            timer.setDaemon(true);
+            return timer;
+        });
+        this.ponderExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread ponder = new Thread(runnable, "search-ponder");
+            ponder.setDaemon(true);
+            return ponder;
+        });
+    }
+
+    public void setSearchMode(SearchMode searchMode) {
+        this.searchMode = searchMode;
+    }
+
+    public SearchMode getSearchMode() {
+        return this.searchMode;
+    }
+
+    /**
+     * Attiva la Principal Variation Search: dopo la prima mossa le sorelle sono cercate
+     * con finestra nulla e ricercate con la finestra piena solo se la superano.
+     */
+    public void setPrincipalVariationSearch(boolean enabled) {
+        this.principalVariationSearch = enabled;
+    }
+
+    public boolean isPrincipalVariationSearch() {
+        return this.principalVariationSearch;
+    }
+
+    /**
+     * Finestre di aspirazione dell'iterative deepening: dalla profondità 3 ogni iterazione
+     * parte da [punteggio precedente - initialWindow, punteggio precedente + initialWindow].
+     * A ogni fallimento la finestra è moltiplicata per wideningFactor (almeno 2) e la stessa
+     * profondità viene ripetuta, finché non diventa piena. initialWindow <= 0 le disattiva.
+     */
+    public void setAspirationWindow(int initialWindow, int wideningFactor) {
+        this.aspirationWindow = initialWindow;
+        this.aspirationWidening = wideningFactor;
+    }
+
+    public int getAspirationWindow() {
+        return this.aspirationWindow;
+    }
+
+    public int getAspirationWidening() {
+        return this.aspirationWidening;
+    }
+
+    /**
+     * Late Move Reductions: nei nodi con almeno minDepth di profondità residua, le mosse
+     * tranquille (né TT, né catture, né killer, né del Re) dalla posizione moveIndex in poi
+     * sono cercate con reduction ply in meno e finestra nulla; se superano la finestra vengono
+     * ricercate a profondità piena. reduction <= 0 le disattiva.
+     */
+    public void setLateMoveReductions(int minDepth, int moveIndex, int reduction) {
+        this.lmrMinDepth = minDepth;
+        this.lmrMoveIndex = moveIndex;
+        this.lmrReduction = reduction;
+    }
+
+    public int getLmrMinDepth() { return this.lmrMinDepth; }
+    public int getLmrMoveIndex() { return this.lmrMoveIndex; }
+    public int getLmrReduction() { return this.lmrReduction; }
+
+    /**
+     * Null move pruning: nei nodi a finestra nulla con almeno minDepth di profondità residua,
+     * se la valutazione statica è già oltre la finestra si passa il turno e si cerca con
+     * reduction ply in meno; se l'avversario non riesce a rientrare nella finestra il nodo
+     * viene tagliato. Escluso con poco materiale, con il Re a una mossa dalla fuga e subito
+     * dopo un'altra mossa nulla. reduction <= 0 lo disattiva.
+     */
+    public void setNullMovePruning(int minDepth, int reduction) {
+        this.nullMoveMinDepth = minDepth;
+        this.nullMoveReduction = reduction;
+    }
+
+    public int getNullMoveMinDepth() { return this.nullMoveMinDepth; }
+    public int getNullMoveReduction() { return this.nullMoveReduction; }
+
+    /**
+     * Potature vicino all'orizzonte (profondità residua 1-2), con margini espressi in pedine
+     * materiali e moltiplicati per la profondità residua.
+     * Futility: se la valutazione statica più il margine non raggiunge alpha (per il Nero:
+     * meno il margine non scende sotto beta), le mosse tranquille non tattiche sono saltate.
+     * Razoring: nei nodi a finestra nulla, oltre il margine di razoring si verifica con la sola
+     * ricerca di quiete. Entrambe sono sospese con il Re a una mossa dalla fuga; 0 le disattiva.
+     */
+    public void setFrontierPruning(int futilityMarginPawns, int razorMarginPawns) {
+        this.futilityMarginPawns = futilityMarginPawns;
+        this.razorMarginPawns = razorMarginPawns;
+    }
+
+    public int getFutilityMarginPawns() { return this.futilityMarginPawns; }
+
+    /**
+     * Solutore df-pn lanciato prima della ricerca quando il Re ha poche pedine sulle sue linee
+     * (tratto al Bianco) o è quasi circondato (tratto al Nero): se dimostra una vittoria entro
+     * attackerMoves mosse di chi muove, la mossa è giocata senza ricerca.
+     * maxNodes limita il costo di ogni tentativo; attackerMoves <= 0 lo disattiva.
+     */
+    public void setForcedWinSolver(int attackerMoves, long maxNodes) {
+        this.solverAttackerMoves = attackerMoves;
+        this.solverMaxNodes = maxNodes;
+    }
+
+    public int getSolverAttackerMoves() { return this.solverAttackerMoves; }
+    public long getSolverMaxNodes() { return this.solverMaxNodes; }
+    public int getRazorMarginPawns() { return this.razorMarginPawns; }
+
+    /**
+     * Nodi visitati (interni e di quiete) dall'ultimo resetSearchStats().
+     */
+    public long getSearchedNodes() {
+        return searchedNodes.sum();
+    }
+
+    /**
+     * Mosse cercate a profondità ridotta (LMR) dall'ultimo resetSearchStats().
+     */
+    public long getReducedSearches() {
+        return reducedSearches.sum();
+    }
+
+    /**
+     * Ricerche ridotte che hanno superato la finestra e sono state ripetute a profondità piena.
+     */
+    public long getReductionResearches() {
+        return reductionResearches.sum();
+    }
+
+    /**
+     * Nodi tagliati dalla mossa nulla dall'ultimo resetSearchStats().
+     */
+    public long getNullMoveCutoffs() {
+        return nullMoveCutoffs.sum();
+    }
+
+    /**
+     * Mosse tranquille saltate dalla futility dall'ultimo resetSearchStats().
+     */
+    public long getFutilityPrunes() {
+        return futilityPrunes.sum();
+    }
+
+    /**
+     * Nodi chiusi dal razoring con la sola ricerca di quiete dall'ultimo resetSearchStats().
+     */
+    public long getRazorCutoffs() {
+        return razorCutoffs.sum();
+    }
+
+    public void resetSearchStats() {
+        searchedNodes.reset();
+        nullMoveCutoffs.reset();
+        futilityPrunes.reset();
+        razorCutoffs.reset();
+        reducedSearches.reset();
+        reductionResearches.reset();
+    }
+
+    /**
+     * Svuota la TT e la cache delle valutazioni.
+     */
+    public void clearTranspositionTable() {
+        transpositionTable.clear();
+        evaluationCache.clear();
+    }
+
+    /**
+     * Azzera killer e storia di tutti i thread (alla prossima ricerca di ciascuno).
+     * Di norma tra una mossa e l'altra la storia viene solo dimezzata.
+     */
+    public void clearSearchHistory() {
+        historyEpoch++;
+    }
+
+    /**
+     * Ferma i thread di ricerca: da chiamare quando il motore non serve più
+     * (i pool non usano thread daemon).
+     */
+    @Override
+    public void shutdown() {
+        stopPondering();
+        stop();
+        executorService.shutdownNow();
+        forkJoinPool.shutdownNow();
+        stopScheduler.shutdownNow();
+        ponderExecutor.shutdownNow();
+    }
+
+    /**
+     * Chiede a tutti i thread della ricerca in corso di fermarsi: ogni nodo controlla il flag
+     * ogni STOP_CHECK_INTERVAL visite e risale con SEARCH_ABORTED. La ricerca restituisce
+     * comunque il risultato dell'ultima profondità completata.
+     */
+    public void stop() {
+        this.stopRequested = true;
     }
 
     // ----------------------------------------------------------------------
     // 1. GENERAZIONE E ORDINAMENTO DELLE MOSSE
     // ----------------------------------------------------------------------
 
-    private List<Action> getLegalMoves(FastTablutState state) {
-        return state.generateLegalMoves();
+    /**
+     * Riordina in-place le prime count mosse di moves per valutazione statica del figlio.
+     * L'ordinamento è stabile: a parità di punteggio resta l'ordine di partenza.
+     * Insertion sort sui punteggi in ctx.rootScores: nessuna allocazione per iterazione.
+     */
+    private void sortMovesByHeuristic(FastTablutState currentState, int[] moves, int count, SearchContext ctx) {
+        if (count == 0) return;
+
+        int[] scores = ctx.rootScores;
+        for (int i = 0; i < count; i++) {
+            if (!currentState.makeMove(moves[i])) return;
+            scores[i] = evaluateState(currentState);
+            currentState.unmakeMove();
+        }
+
+        // Il Bianco vuole i punteggi alti in testa, il Nero quelli bassi
+        int sign = currentState.getTurn().equals(Turn.WHITE) ? -1 : 1;
+        for (int i = 1; i < count; i++) {
+            int move = moves[i];
+            int key = sign * scores[i];
+            int j = i - 1;
+            while (j >= 0 && sign * scores[j] > key) {
+                moves[j + 1] = moves[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            scores[j + 1] = sign * key;
+        }
     }
 
-    private List<Action> sortMovesByHeuristic(FastTablutState currentState, List<Action> moves) {
-        if (moves.isEmpty()) return Collections.emptyList();
+    /**
+     * Ordinamento economico di una lista completa di mosse (nodi YBWC), senza valutare i figli:
+     * prima i due killer del ply, poi le altre per storia decrescente (a parità resta l'ordine
+     * di generazione). La mossa della TT viene cercata a parte, prima di tutte.
+     */
+    private void orderMoves(int[] moves, int count, int ply, SearchContext ctx) {
+        int[] scores = ctx.moveScores[ply];
+        int killer0 = ctx.killers[ply][0];
+        int killer1 = ctx.killers[ply][1];
+        int[] history = ctx.history;
+
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int score;
+            if (move == killer0) score = KILLER_SCORE;
+            else if (move == killer1) score = KILLER_SCORE - 1;
+            else score = history[FastTablutState.moveFrom(move) * BOARD_SQUARES + FastTablutState.moveTo(move)];
+
+            // Insertion sort decrescente, stabile
+            int j = i;
+            while (j > 0 && scores[j - 1] < score) {
+                scores[j] = scores[j - 1];
+                moves[j] = moves[j - 1];
+                j--;
+            }
+            scores[j] = score;
+            moves[j] = move;
+        }
+    }
 
-        List<ActionScore> scoredMoves = new ArrayList<>();
+    /**
+     * Aggiorna killer e storia dopo un taglio provocato da una mossa tranquilla.
+     */
+    private static void recordCutoff(SearchContext ctx, int move, int ply, int depthRemaining) {
+        int[] killers = ctx.killers[ply];
+        if (killers[0] != move) {
+            killers[1] = killers[0];
+            killers[0] = move;
+        }
 
-        for (Action action : moves) {
-            FastTablutState nextStateForEval = currentState.clone();
-            if (nextStateForEval.applyMove(action)) {
-                int score = evaluateState(nextStateForEval);
-                scoredMoves.add(new ActionScore(action, score));
-            }
+        int[] history = ctx.history;
+        int index = FastTablutState.moveFrom(move) * BOARD_SQUARES + FastTablutState.moveTo(move);
+        history[index] += depthRemaining * depthRemaining;
+        if (history[index] > HISTORY_LIMIT) {
+            for (int i = 0; i < history.length; i++) history[i] >>= 1;
         }
+    }
+
+    /**
+     * Nodo a cui applicare razoring e futility: vicino all'orizzonte, con una finestra lontana
+     * dai punteggi di vittoria e senza il Re a una mossa dalla fuga.
+     */
+    private boolean isFrontierNode(FastTablutState state, int alpha, int beta, int depthRemaining) {
+        return depthRemaining <= FRONTIER_MAX_DEPTH
+                && alpha > HEURISTIC_MIN && beta < HEURISTIC_MAX
+                && !state.hasKingOpenEscape();
+    }
 
-        if(scoredMoves.isEmpty()) return moves;
+    private int frontierMargin(int marginPawns, int depthRemaining) {
+        return marginPawns * depthRemaining * this.pawnValue;
+    }
 
-        Collections.sort(scoredMoves, new ActionScoreComparator(currentState.getTurn()));
+    /**
+     * Mosse tranquille (appena eseguite) che la futility non deve mai saltare: quelle del Re,
+     * quelle che aprono una linea di fuga e quelle che si affiancano al Re.
+     */
+    private static boolean isFrontierTactical(FastTablutState state, int move) {
+        int to = FastTablutState.moveTo(move);
+        int kingSq = state.kingRow * BOARD_SIZE + state.kingCol;
+        if (to == kingSq || state.hasKingOpenEscape()) return true;
+        return Math.abs(to / BOARD_SIZE - state.kingRow) + Math.abs(to % BOARD_SIZE - state.kingCol) == 1;
+    }
 
-        List<Action> orderedActions = new ArrayList<>();
-        for (ActionScore as : scoredMoves) {
-            orderedActions.add(as.action);
-        }
+    /**
+     * Condizioni per tentare la mossa nulla, prima di spendere una valutazione statica.
+     */
+    private boolean nullMoveAllowed(FastTablutState state, int alpha, int beta, int depthRemaining, int ply,
+                                    SearchContext ctx) {
+        if (this.nullMoveReduction <= 0 || depthRemaining < this.nullMoveMinDepth) return false;
+        // Mai due mosse nulle di fila, e solo fuori dalla variante principale
+        if (ctx.nullMoveAt[ply] || beta - alpha > 1) return false;
 
-        return orderedActions;
+        int ownPieces = state.getTurn().equals(Turn.WHITE) ? state.whitePawnsCount : state.blackPawnsCount;
+        if (ownPieces < NULL_MOVE_MIN_PIECES) return false;
+
+        // Con il Re a una mossa dalla fuga passare il turno non è mai sicuro
+        return !state.hasKingOpenEscape();
+    }
+
+    /**
+     * Riduzione LMR per la mossa appena eseguita (0 se va cercata a profondità piena).
+     * Lascia sempre almeno un ply prima della quiete.
+     */
+    private int lateMoveReduction(FastTablutState state, MovePicker picker, int move, int searchedMoves,
+                                  int depthRemaining) {
+        int reduction = this.lmrReduction;
+        if (reduction <= 0 || depthRemaining < this.lmrMinDepth || searchedMoves < this.lmrMoveIndex) return 0;
+        if (!picker.inQuietStage() || state.getLastCaptureCount() != 0) return 0;
+        // Le mosse del Re cambiano le vie di fuga: mai ridotte
+        if (state.kingRow * BOARD_SIZE + state.kingCol == FastTablutState.moveTo(move)) return 0;
+        return Math.min(reduction, depthRemaining - 2);
+    }
+
+    private SearchContext searchContext() {
+        return prepareContext(searchContexts.get());
+    }
+
+    /**
+     * Allinea un contesto alla ricerca corrente: a ogni nuova ricerca i killer sono azzerati
+     * e la storia dimezzata, dopo clearSearchHistory() anche la storia riparte da zero.
+     */
+    private SearchContext prepareContext(SearchContext ctx) {
+        int currentSearch = this.searchId;
+        int currentEpoch = this.historyEpoch;
+        if (ctx.historyEpoch != currentEpoch) {
+            Arrays.fill(ctx.history, 0);
+            ctx.historyEpoch = currentEpoch;
+        }
+        if (ctx.searchId != currentSearch) {
+            Arrays.fill(ctx.nullMoveAt, false);
+            for (int[] killers : ctx.killers) {
+                killers[0] = NO_MOVE;
+                killers[1] = NO_MOVE;
+            }
+            for (int i = 0; i < ctx.history.length; i++) ctx.history[i] >>= 1;
+            ctx.searchId = currentSearch;
+        }
+        return ctx;
     }
 
     // ----------------------------------------------------------------------
@@ -141,32 +806,247 @@ public class AlphaBetaEngine {
     // ----------------------------------------------------------------------
 
     public Action getBestMove(FastTablutState currentState, int timeoutSeconds) {
+        return getBestMove(currentState, TimeManager.fixed(timeoutSeconds * 1000L - 200L));
+    }
 
-        long startTime = System.currentTimeMillis();
-        final long timeLimit = startTime + (timeoutSeconds * 1000L) - 200L;
+    /**
+     * Iterative deepening governato da timeManager: il limite hard è imposto dal timer di stop,
+     * quello soft è consultato dopo ogni profondità completata.
+     * Le mosse forzate (unica mossa legale o vittoria immediata) sono giocate senza ricerca.
+     */
+    @Override
+    public Action getBestMove(FastTablutState currentState, TimeManager timeManager) {
+        timeManager.start(currentState.getTurn().equals(Turn.WHITE));
+        final long timeLimit = timeManager.getHardDeadline();
+
+        stopPondering();
+        ResumePoint resume = null;
+        if (expectedPonderKey != 0L && currentState.getZobristKey() == expectedPonderKey) {
+            resume = ponderResumePoint(currentState, expectedPonderDepth);
+            System.out.println("ID: Ponder hit, la TT contiene già la risposta prevista"
+                    + (resume != null ? ": riparto da D=" + resume.depth + "." : "."));
+        }
+        expectedPonderKey = 0L;
+        expectedPonderDepth = 0;
 
-        this.transpositionTable.clear();
+        // La TT resta valida tra una mossa e l'altra: si avanza solo l'età delle entry
+        this.transpositionTable.newSearch();
+        this.searchId++;
+        this.stopRequested = false;
 
-        List<Action> legalMoves = this.getLegalMoves(currentState);
+        int[] legalMoves = new int[FastTablutState.MAX_MOVES];
+        int legalCount = currentState.generateMoves(legalMoves, 0);
 
-        if (legalMoves.isEmpty()) {
+        if (legalCount == 0) {
             System.out.println("ID: Nessuna mossa legale disponibile. Ritorno null.");
             return null;
         }
-        if (legalMoves.size() == 1) {
-            System.out.println("ID: Solo una mossa legale disponibile. Ritorno: " + legalMoves.get(0));
-            return legalMoves.get(0);
+        if (legalCount == 1) {
+            Action onlyMove = currentState.toAction(legalMoves[0]);
+            System.out.println("ID: Solo una mossa legale disponibile. Ritorno: " + onlyMove);
+            return onlyMove;
+        }
+        int winningMove = findImmediateWin(currentState, legalMoves, legalCount);
+        if (winningMove != NO_MOVE) {
+            Action win = currentState.toAction(winningMove);
+            System.out.println("ID: Vittoria immediata disponibile. Ritorno: " + win);
+            return win;
+        }
+
+        // Un solo timer per ricerca alza il flag di stop allo scadere del tempo: copre anche il solutore
+        ScheduledFuture<?> stopTimer = this.stopScheduler.schedule(this::stop,
+                Math.max(0L, timeLimit - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        int bestMove;
+        try {
+            int forcedMove = solveForcedWin(currentState);
+            if (forcedMove != NO_MOVE) {
+                Action forced = currentState.toAction(forcedMove);
+                System.out.println("ID: Vittoria forzata dimostrata dal solutore. Ritorno: " + forced);
+                return forced;
+            }
+
+            bestMove = searchRoot(currentState, legalMoves, legalCount, timeManager, resume).getMove();
+        } finally {
+            stopTimer.cancel(false);
+            stop();
         }
 
+        // Conversione in Action solo qui, alla radice
+        return currentState.toAction(bestMove);
+    }
+
+    /**
+     * Iterative deepening alla radice nella modalità scelta con setSearchMode, sia per la mossa
+     * da giocare sia per il pondering.
+     */
+    private RootSearchResult searchRoot(FastTablutState currentState, int[] legalMoves, int legalCount,
+                                        TimeManager timeManager, ResumePoint resume) {
+        if (this.searchMode == SearchMode.LAZY_SMP) {
+            return searchLazySmp(currentState, legalMoves, legalCount, timeManager, resume);
+        } else if (this.searchMode == SearchMode.YBWC) {
+            return searchYbwc(currentState, legalMoves[0], timeManager, resume);
+        } else {
+            return searchRootSplit(currentState, legalMoves, legalCount, timeManager, resume);
+        }
+    }
 
-        Action bestMoveAtCurrentDepth = legalMoves.get(0);
+    /**
+     * Pondering: dopo aver inviato la nostra mossa, cerca la posizione con l'avversario al tratto
+     * (nella modalità di ricerca corrente, tutte le risposte, senza limite di tempo) finché non
+     * arriva la sua mossa.
+     * La TT persistente conserva i sottoalberi già cercati: la ricerca successiva li ritrova
+     * e, se l'avversario gioca la risposta prevista (ponder hit), riparte dalla profondità
+     * completata dal pondering (vedi ponderResumePoint).
+     * La ricerca è fermata da stopPondering(), chiamato anche da getBestMove().
+     */
+    @Override
+    public void startPondering(FastTablutState opponentToMove) {
+        stopPondering();
+        Turn turn = opponentToMove.getTurn();
+        if (!turn.equals(Turn.WHITE) && !turn.equals(Turn.BLACK)) return;
+
+        int[] moves = new int[FastTablutState.MAX_MOVES];
+        int count = opponentToMove.generateMoves(moves, 0);
+        if (count == 0) return;
+
+        this.transpositionTable.newSearch();
+        this.searchId++;
+        this.stopRequested = false;
+
+        FastTablutState state = opponentToMove.clone();
+        TimeManager timeManager = TimeManager.fixed(PONDER_MAX_MILLIS);
+        timeManager.start(turn.equals(Turn.WHITE));
+        this.ponderState = state;
+        this.ponderTask = ponderExecutor.submit(() -> searchRoot(state, moves, count, timeManager, null));
+    }
+
+    /**
+     * Ferma il pondering in corso (se c'è) e ne attende la fine, così la ricerca successiva
+     * parte con i thread liberi. Ricorda la chiave della posizione dopo la risposta prevista
+     * e la profondità a cui il pondering l'ha scelta.
+     */
+    @Override
+    public void stopPondering() {
+        Future<RootSearchResult> task = this.ponderTask;
+        if (task == null) return;
+        this.ponderTask = null;
+        stop();
+        try {
+            RootSearchResult predicted = task.get();
+            FastTablutState expected = this.ponderState.clone();
+            if (expected.applyMove(predicted.getMove())) {
+                this.expectedPonderKey = expected.getZobristKey();
+                this.expectedPonderDepth = predicted.getDepth();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // Pondering senza risultato: nessuna risposta prevista
+        }
+        this.ponderState = null;
+    }
+
+    /**
+     * Il pondering ha completato la radice avversaria a profondità ponderedDepth, quindi la
+     * posizione dopo la risposta prevista è stata cercata a ponderedDepth - 1: si riparte al più
+     * un ply oltre, e solo se la TT ha ancora un punteggio esatto almeno a quella profondità con
+     * una mossa legale. Entry più profonde (trasposizioni, ricerche vecchie) non spostano la ripresa.
+     *
+     * @return il punto di ripresa, oppure null per ripartire da D=1.
+     */
+    private ResumePoint ponderResumePoint(FastTablutState state, int ponderedDepth) {
+        int searchedDepth = ponderedDepth - 1;
+        if (searchedDepth < 1) return null;
+        long entry = transpositionTable.probe(state.getZobristKey());
+        if (entry == 0L || TranspositionTable.nodeTypeOf(entry) != EXACT_SCORE
+                || TranspositionTable.depthOf(entry) < searchedDepth
+                || !state.isLegalMove(TranspositionTable.moveOf(entry))) {
+            return null;
+        }
+        return new ResumePoint(Math.min(searchedDepth + 1, MAX_SEARCH_DEPTH),
+                TranspositionTable.moveOf(entry), TranspositionTable.scoreOf(entry));
+    }
+
+    /**
+     * @return la prima mossa di una vittoria forzata dimostrata da df-pn, oppure NO_MOVE.
+     * Oltre al budget di nodi il solutore rispetta il flag di stop, quindi il limite hard.
+     */
+    private int solveForcedWin(FastTablutState state) {
+        int attackerMoves = this.solverAttackerMoves;
+        if (attackerMoves <= 0 || !ProofNumberSolver.isPromising(state)) return NO_MOVE;
+        if (solver.solve(state, attackerMoves, this.solverMaxNodes, () -> stopRequested)
+                != ProofNumberSolver.Result.PROVEN) {
+            return NO_MOVE;
+        }
+        return solver.getProofMove();
+    }
+
+    /**
+     * @return una mossa che termina subito la partita a favore di chi muove, oppure NO_MOVE.
+     */
+    private static int findImmediateWin(FastTablutState state, int[] moves, int count) {
+        Turn win = state.getTurn().equals(Turn.WHITE) ? Turn.WHITEWIN : Turn.BLACKWIN;
+        for (int i = 0; i < count; i++) {
+            if (!state.makeMove(moves[i])) continue;
+            boolean winning = state.getTurn().equals(win);
+            state.unmakeMove();
+            if (winning) return moves[i];
+        }
+        return NO_MOVE;
+    }
+
+    /**
+     * Ricerca a profondità fissa, senza limite di tempo, sul thread chiamante.
+     * Pensata per benchmark riproducibili: la TT non viene svuotata.
+     */
+    public AlphaBetaResult searchToDepth(FastTablutState currentState, int depth) {
+        FastTablutState state = currentState.clone();
+        int[] rootMoves = new int[FastTablutState.MAX_MOVES];
+        int count = state.generateMoves(rootMoves, 0);
+        if (count == 0) return new AlphaBetaResult(evaluateState(state), NO_MOVE);
+        this.searchId++;
+        this.stopRequested = false;
+        SearchContext ctx = searchContext();
+        sortMovesByHeuristic(state, rootMoves, count, ctx);
+
+        AlphaBetaResult result = null;
+        int previousScore = 0;
+        for (int d = 1; d <= depth; d++) {
+            result = searchRootAspiration(state, rootMoves, count, d, previousScore, ctx);
+            previousScore = result.getScore();
+        }
+        return result;
+    }
+
+    /**
+     * Modalità ROOT_SPLIT: iterative deepening in cui ogni mossa della radice è un task
+     * separato, cercato con finestra piena. Con resume riparte dal punto di ripresa del ponder hit.
+     */
+    private RootSearchResult searchRootSplit(FastTablutState currentState, int[] legalMoves, int legalCount,
+                                             TimeManager timeManager, ResumePoint resume) {
+        final long timeLimit = timeManager.getHardDeadline();
+        // Il lato al tratto è quello della radice: nel pondering muove l'avversario
+        final boolean maximizing = currentState.getTurn().equals(Turn.WHITE);
+        // L'ordinamento lavora in-place (make/unmake): usa una copia privata dello stato
+        FastTablutState orderingState = currentState.clone();
+
+        int bestMoveAtCurrentDepth = legalMoves[0];
         int bestScoreAtCurrentDepth = evaluateState(currentState);
 
         int currentDepth = 1;
+        int completedDepth = 0;
+        int retryWindow = -1; // >= 0 solo quando si ripete una profondità dopo un fallimento
+
+        if (resume != null) {
+            bestMoveAtCurrentDepth = resume.move;
+            bestScoreAtCurrentDepth = resume.score;
+            currentDepth = resume.depth;
+            completedDepth = resume.depth - 1;
+        }
 
-        while (true) {
+        while (currentDepth <= MAX_SEARCH_DEPTH) {
 
-            if (System.currentTimeMillis() >= timeLimit) {
+            if (stopRequested) {
                 System.out.println("ID: Tempo limite raggiunto prima di iniziare D=" + currentDepth);
                 break;
             }
@@ -174,41 +1054,51 @@ public class AlphaBetaEngine {
             long timeRemaining = timeLimit - System.currentTimeMillis();
             if (timeRemaining <= 0) break; // Controllo extra
 
-            int currentIterationBestScore = (this.player.equals(Turn.WHITE)) ? MIN_VALUE : MAX_VALUE;
-            Action currentIterationBestMove = bestMoveAtCurrentDepth;
+            int currentIterationBestScore = maximizing ? MIN_VALUE : MAX_VALUE;
+            int currentIterationBestMove = bestMoveAtCurrentDepth;
 
             final int searchDepth = currentDepth; // Variabile final per la lambda
 
-            final Action bestActionFromLastIteration = bestMoveAtCurrentDepth;
-            legalMoves.sort((a1, a2) -> {
-                if (a1.equals(bestActionFromLastIteration)) return -1;
-                if (a2.equals(bestActionFromLastIteration)) return 1;
-                return 0;
-            });
-            List<Action> orderedMoves = sortMovesByHeuristic(currentState, legalMoves);
+            int window = retryWindow >= 0 ? retryWindow
+                    : (currentDepth >= ASPIRATION_MIN_DEPTH ? this.aspirationWindow : 0);
+            retryWindow = -1;
+            final int rootAlpha = aspirationAlpha(bestScoreAtCurrentDepth, window);
+            final int rootBeta = aspirationBeta(bestScoreAtCurrentDepth, window);
+
+            // La mossa migliore dell'iterazione precedente va in testa (a parità di punteggio resta prima)
+            for (int i = 1; i < legalCount; i++) {
+                if (legalMoves[i] == bestMoveAtCurrentDepth) {
+                    System.arraycopy(legalMoves, 0, legalMoves, 1, i);
+                    legalMoves[0] = bestMoveAtCurrentDepth;
+                    break;
+                }
+            }
+            sortMovesByHeuristic(orderingState, legalMoves, legalCount, searchContext());
 
 
             List<Future<AlphaBetaResult>> futures = new ArrayList<>();
 
-            for (Action action : orderedMoves) {
+            for (int i = 0; i < legalCount; i++) {
+                final int move = legalMoves[i];
 
                 Callable<AlphaBetaResult> task = () -> {
-                    if (System.currentTimeMillis() >= timeLimit) {
-                        throw new TimeoutException("Timeout prima dell'esecuzione del task");
-                    }
+                    if (stopRequested) throw SEARCH_ABORTED;
 
+                    // Ogni task ha la sua copia: la ricerca sotto usa make/unmake in-place.
+                    // In caso di timeout la copia resta "sporca" e viene semplicemente scartata.
                     FastTablutState nextState = currentState.clone();
-                    if (!nextState.applyMove(action)) {
-                        return new AlphaBetaResult(this.player.equals(Turn.WHITE) ? MIN_VALUE : MAX_VALUE, action);
+                    if (!nextState.applyMove(move)) {
+                        return new AlphaBetaResult(maximizing ? MIN_VALUE : MAX_VALUE, move);
                     }
 
-                    AlphaBetaResult result;
-                    if (this.player.equals(Turn.WHITE)) {
-                        result = minValue(nextState, INITIAL_ALPHA, INITIAL_BETA, searchDepth - 1, searchDepth, timeLimit);
+                    SearchContext ctx = searchContext();
+                    int score;
+                    if (maximizing) {
+                        score = minValue(nextState, rootAlpha, rootBeta, searchDepth - 1, 1, ctx);
                     } else {
-                        result = maxValue(nextState, INITIAL_ALPHA, INITIAL_BETA, searchDepth - 1, searchDepth, timeLimit);
+                        score = maxValue(nextState, rootAlpha, rootBeta, searchDepth - 1, 1, ctx);
                     }
-                    return new AlphaBetaResult(result.getScore(), action);
+                    return new AlphaBetaResult(score, move);
                 };
 
                 futures.add(executorService.submit(task));
@@ -224,29 +1114,46 @@ public class AlphaBetaEngine {
 
                     AlphaBetaResult result = future.get(timeRemaining, TimeUnit.MILLISECONDS);
 
-                    Action action = result.getAction();
+                    int move = result.getMove();
                     int currentScore = result.getScore();
 
-                    if (action == null) continue;
+                    if (move == NO_MOVE) continue;
 
-                    if (this.player.equals(Turn.WHITE)) {
+                    if (maximizing) {
                         if (currentScore > currentIterationBestScore) {
                             currentIterationBestScore = currentScore;
-                            currentIterationBestMove = action;
+                            currentIterationBestMove = move;
                         }
                     } else {
                         if (currentScore < currentIterationBestScore) {
                             currentIterationBestScore = currentScore;
-                            currentIterationBestMove = action;
+                            currentIterationBestMove = move;
                         }
                     }
                 }
 
-                if (System.currentTimeMillis() < timeLimit) {
+                if (window > 0 && !stopRequested
+                        && (currentIterationBestScore <= rootAlpha || currentIterationBestScore >= rootBeta)) {
+                    // Fallimento della finestra: si ripete la stessa profondità con una finestra più larga.
+                    // Una mossa che fallisce alta è comunque migliore della precedente.
+                    if (maximizing ? currentIterationBestScore >= rootBeta
+                            : currentIterationBestScore <= rootAlpha) {
+                        bestMoveAtCurrentDepth = currentIterationBestMove;
+                    }
+                    retryWindow = widenAspirationWindow(window);
+                    continue;
+                }
+
+                if (!stopRequested) {
                     bestMoveAtCurrentDepth = currentIterationBestMove;
                     bestScoreAtCurrentDepth = currentIterationBestScore;
+                    completedDepth = currentDepth;
 
-                    //System.out.println("ID: Profondità D=" + currentDepth + " COMPLETATA. Mossa: " + bestMoveAtCurrentDepth.toString() + " Punteggio: " + bestScoreAtCurrentDepth);
+                    //System.out.println("ID: Profondità D=" + currentDepth + " COMPLETATA. Mossa: " + bestMoveAtCurrentDepth + " Punteggio: " + bestScoreAtCurrentDepth);
+                    if (!timeManager.shouldContinue(currentDepth, bestMoveAtCurrentDepth, bestScoreAtCurrentDepth)) {
+                        System.out.println("ID: Mossa decisa dopo D=" + currentDepth + " in " + timeManager.getElapsedMillis() + " ms.");
+                        break;
+                    }
                     currentDepth++;
                 } else {
                     //System.out.println("ID: Timeout durante il completamento di D=" + currentDepth + ". Uso D=" + (currentDepth - 1));
@@ -256,12 +1163,18 @@ public class AlphaBetaEngine {
 
             } catch (TimeoutException | InterruptedException | CancellationException e) {
                 System.out.println("ID: Timeout/Interruzione/Cancellazione. Uso il miglior risultato da D=" + (currentDepth - 1) + ".");
+                // I task in corso escono da soli al prossimo controllo del flag di stop
                 for (Future<AlphaBetaResult> future : futures) {
-                    future.cancel(true);
+                    future.cancel(false);
                 }
                 break;
             } catch (ExecutionException e) {
-                System.err.println("Errore durante l'esecuzione del thread: " + e.getMessage());
+                if (!(e.getCause() instanceof SearchAborted)) {
+                    System.err.println("Errore durante l'esecuzione del thread: " + e.getMessage());
+                }
+                for (Future<AlphaBetaResult> future : futures) {
+                    future.cancel(false);
+                }
                 break;
             }
         }
@@ -274,194 +1187,697 @@ public class AlphaBetaEngine {
         // System.out.println("INFO: Punteggio finale della mossa: " + bestScoreAtCurrentDepth);
         // System.out.println("------------------------");
 
-        return bestMoveAtCurrentDepth;
+        return new RootSearchResult(completedDepth, bestMoveAtCurrentDepth, bestScoreAtCurrentDepth);
     }
 
-    // ----------------------------------------------------------------------
-    // 3. MAX VALUE (White) e 4. MIN VALUE (Black)
-    // ----------------------------------------------------------------------
+    /**
+     * Modalità LAZY_SMP: N_CPUS thread eseguono ciascuno l'intero iterative deepening
+     * sulla propria copia dello stato e comunicano solo tramite la Transposition Table.
+     * I thread di indice dispari partono un ply più in profondità e ogni helper ruota
+     * l'ordine delle mosse alla radice, così esplorano sottoalberi diversi.
+     * Vince il risultato della profondità completata più alta. Con resume tutti i thread
+     * ripartono dal punto di ripresa del ponder hit, con la sua mossa in testa.
+     */
+    private RootSearchResult searchLazySmp(FastTablutState currentState, int[] legalMoves, int legalCount,
+                                           TimeManager timeManager, ResumePoint resume) {
+        final long timeLimit = timeManager.getHardDeadline();
+        FastTablutState orderingState = currentState.clone();
+        sortMovesByHeuristic(orderingState, legalMoves, legalCount, searchContext());
+        final int firstDepth = resume != null ? resume.depth : 1;
+        final int firstScore = resume != null ? resume.score : 0;
+        if (resume != null) {
+            for (int i = 1; i < legalCount; i++) {
+                if (legalMoves[i] == resume.move) {
+                    System.arraycopy(legalMoves, 0, legalMoves, 1, i);
+                    legalMoves[0] = resume.move;
+                    break;
+                }
+            }
+        }
+
+        final RootSearchResult shared = new RootSearchResult(legalMoves[0]);
+        List<Future<?>> helpers = new ArrayList<>();
+
+        for (int t = 0; t < N_CPUS; t++) {
+            final int threadIndex = t;
+            helpers.add(executorService.submit(() -> {
+                FastTablutState state = currentState.clone();
+                SearchContext ctx = searchContext();
+
+                int[] rootMoves = Arrays.copyOf(legalMoves, legalCount);
+                if (threadIndex > 0 && legalCount > 2) {
+                    // Rotazione della coda (la prima mossa resta la migliore nota); con una o due
+                    // mosse non c'è nulla da ruotare. Succede nel pondering, che non filtra la risposta unica
+                    int shift = threadIndex % (legalCount - 1);
+                    int[] tail = Arrays.copyOfRange(rootMoves, 1, legalCount);
+                    for (int i = 0; i < tail.length; i++) {
+                        rootMoves[1 + i] = tail[(i + shift) % tail.length];
+                    }
+                }
+
+                int previousScore = firstScore;
+                for (int depth = firstDepth + (threadIndex & 1); depth <= MAX_SEARCH_DEPTH; depth++) {
+                    if (stopRequested) break;
+
+                    AlphaBetaResult result = searchRootAspiration(state, rootMoves, legalCount, depth,
+                            previousScore, ctx);
+                    shared.offer(depth, result.getMove(), result.getScore());
+                    previousScore = result.getScore();
+                    // Il thread 0 (senza salto di profondità) decide per tutti quando fermarsi
+                    if (threadIndex == 0 && !timeManager.shouldContinue(depth, result.getMove(), result.getScore())) {
+                        stop();
+                        break;
+                    }
 
-    private AlphaBetaResult maxValue(FastTablutState state, int alpha, int beta, int depthRemaining, int currentMaxDepth, long timeLimit) {
-        if (System.currentTimeMillis() >= timeLimit) {
-            throw new RuntimeException("Timeout reached in MaxValue");
+                    // La migliore di questa iterazione in testa per la successiva
+                    for (int i = 1; i < legalCount; i++) {
+                        if (rootMoves[i] == result.getMove()) {
+                            System.arraycopy(rootMoves, 0, rootMoves, 1, i);
+                            rootMoves[0] = result.getMove();
+                            break;
+                        }
+                    }
+                }
+                return null;
+            }));
         }
 
-        if (state.getTurn().equals(Turn.WHITEWIN)) {
-            return new AlphaBetaResult(MAX_VALUE + depthRemaining, null);
+        for (Future<?> helper : helpers) {
+            long timeRemaining = timeLimit - System.currentTimeMillis();
+            try {
+                if (timeRemaining <= 0) throw new TimeoutException();
+                helper.get(timeRemaining, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | InterruptedException | CancellationException e) {
+                break;
+            } catch (ExecutionException e) {
+                // Normale: gli helper terminano con il segnale di stop dei nodi
+            }
         }
-        if (state.getTurn().equals(Turn.BLACKWIN)) {
-            return new AlphaBetaResult(MIN_VALUE - depthRemaining, null);
+        // Gli helper ancora attivi escono da soli al prossimo controllo del flag di stop
+        for (Future<?> helper : helpers) {
+            helper.cancel(false);
         }
 
-        if (depthRemaining == 0) {
-            // Chiama quiescence con la profondità massima di quiete
-            return quiescenceSearch(state, alpha, beta, timeLimit, MAX_QUIESCENCE_DEPTH);
+        return shared;
+    }
+
+    /**
+     * searchRoot con finestra di aspirazione attorno a previousScore, ripetuta con finestra
+     * sempre più larga finché il punteggio non cade strettamente al suo interno.
+     */
+    private AlphaBetaResult searchRootAspiration(FastTablutState state, int[] rootMoves, int count, int depth,
+                                                 int previousScore, SearchContext ctx) {
+        int window = depth >= ASPIRATION_MIN_DEPTH ? this.aspirationWindow : 0;
+        while (true) {
+            int alpha = aspirationAlpha(previousScore, window);
+            int beta = aspirationBeta(previousScore, window);
+            AlphaBetaResult result = searchRoot(state, rootMoves, count, depth, alpha, beta, ctx);
+            if (window <= 0 || (result.getScore() > alpha && result.getScore() < beta)) {
+                return result;
+            }
+            window = widenAspirationWindow(window);
         }
+    }
 
+    /**
+     * Ricerca completa della radice a profondità fissa su un unico thread, con alpha/beta
+     * propagati tra le mosse sorelle. Salva il risultato in TT per gli altri thread.
+     */
+    private AlphaBetaResult searchRoot(FastTablutState state, int[] rootMoves, int count, int depth,
+                                       int alpha, int beta, SearchContext ctx) {
+        boolean maximizing = state.getTurn().equals(Turn.WHITE);
         int oldAlpha = alpha;
+        int oldBeta = beta;
+        int bestScore = maximizing ? MIN_VALUE - MAX_SEARCH_DEPTH - 1 : MAX_VALUE + MAX_SEARCH_DEPTH + 1;
+        int bestMove = rootMoves[0];
+
+        for (int i = 0; i < count; i++) {
+            int move = rootMoves[i];
+            if (!state.makeMove(move)) continue;
+
+            int score;
+            if (maximizing) {
+                if (i > 0 && principalVariationSearch) {
+                    score = minValue(state, alpha, alpha + 1, depth - 1, 1, ctx);
+                    if (score > alpha && score < beta) {
+                        score = minValue(state, alpha, beta, depth - 1, 1, ctx);
+                    }
+                } else {
+                    score = minValue(state, alpha, beta, depth - 1, 1, ctx);
+                }
+            } else {
+                if (i > 0 && principalVariationSearch) {
+                    score = maxValue(state, beta - 1, beta, depth - 1, 1, ctx);
+                    if (score < beta && score > alpha) {
+                        score = maxValue(state, alpha, beta, depth - 1, 1, ctx);
+                    }
+                } else {
+                    score = maxValue(state, alpha, beta, depth - 1, 1, ctx);
+                }
+            }
+            state.unmakeMove();
 
-        long stateKey = state.getZobristKey();
-        TranspositionEntry entry = transpositionTable.get(stateKey);
+            if (maximizing ? score > bestScore : score < bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+            if (maximizing) alpha = Math.max(alpha, bestScore); else beta = Math.min(beta, bestScore);
+            if (alpha >= beta) break;
+        }
 
-        Action ttBestMove = null;
+        int nodeType = bestScore <= oldAlpha ? UPPER_BOUND : (bestScore >= oldBeta ? LOWER_BOUND : EXACT_SCORE);
+        transpositionTable.store(state.getZobristKey(), bestScore, depth, nodeType, bestMove);
+        return new AlphaBetaResult(bestScore, bestMove);
+    }
 
-        if (entry != null && entry.getDepth() >= depthRemaining) {
-            ttBestMove = entry.getBestMove();
+    // --- YBWC (Young Brothers Wait) ---
 
-            if (entry.nodeType == EXACT_SCORE) {
-                return new AlphaBetaResult(entry.getScore(), ttBestMove);
-            } else if (entry.nodeType == LOWER_BOUND) {
-                alpha = Math.max(alpha, entry.getScore());
-            } else if (entry.nodeType == UPPER_BOUND) {
-                beta = Math.min(beta, entry.getScore());
-            }
-            if (alpha >= beta) {
-                return new AlphaBetaResult(entry.getScore(), ttBestMove);
+    /**
+     * Sotto questa profondità residua i nodi non vengono più divisi: il costo di clone e fork
+     * supererebbe quello del sottoalbero.
+     */
+    private static final int YBWC_MIN_SPLIT_DEPTH = 3;
+
+    /**
+     * Modalità YBWC: iterative deepening sul thread chiamante, ogni iterazione è un unico
+     * task radice eseguito dal ForkJoinPool. Con resume riparte dal punto di ripresa del ponder hit.
+     */
+    private RootSearchResult searchYbwc(FastTablutState currentState, int fallbackMove, TimeManager timeManager,
+                                        ResumePoint resume) {
+        int bestMove = resume != null ? resume.move : fallbackMove;
+        int previousScore = resume != null ? resume.score : 0;
+        int completedDepth = resume != null ? resume.depth - 1 : 0;
+
+        for (int depth = resume != null ? resume.depth : 1; depth <= MAX_SEARCH_DEPTH; depth++) {
+            int window = depth >= ASPIRATION_MIN_DEPTH ? this.aspirationWindow : 0;
+            try {
+                while (true) {
+                    if (stopRequested) return new RootSearchResult(completedDepth, bestMove, previousScore);
+
+                    int rootAlpha = aspirationAlpha(previousScore, window);
+                    int rootBeta = aspirationBeta(previousScore, window);
+                    SplitPoint root = new SplitPoint(null, rootAlpha, rootBeta);
+                    AlphaBetaResult result = forkJoinPool.invoke(new YbwcTask(currentState.clone(), root, depth, 0));
+                    if (result == null) break;
+
+                    int score = result.getScore();
+                    boolean failedLow = score <= rootAlpha;
+                    boolean failedHigh = score >= rootBeta;
+                    if (window > 0 && (failedLow || failedHigh)) {
+                        // Una mossa che fallisce alta per il giocatore di turno è comunque migliore
+                        if (currentState.getTurn().equals(Turn.WHITE) ? failedHigh : failedLow) {
+                            bestMove = result.getMove();
+                        }
+                        window = widenAspirationWindow(window);
+                        continue;
+                    }
+                    if (result.getMove() != NO_MOVE) bestMove = result.getMove();
+                    previousScore = score;
+                    completedDepth = depth;
+                    if (!timeManager.shouldContinue(depth, bestMove, score)) {
+                        return new RootSearchResult(completedDepth, bestMove, previousScore);
+                    }
+                    break;
+                }
+            } catch (SearchAborted e) {
+                // Ricerca fermata: si tiene il risultato dell'ultima profondità completata
+                break;
             }
         }
+        return new RootSearchResult(completedDepth, bestMove, previousScore);
+    }
 
-        List<Action> possibleActions = this.getLegalMoves(state);
-
-        if (possibleActions.isEmpty()) {
-            return new AlphaBetaResult(MIN_VALUE - depthRemaining, null);
+    /**
+     * Nodo YBWC: il primo figlio (la mossa della TT se presente) è cercato in serie; solo
+     * dopo, con la finestra aggiornata, i fratelli minori vengono lanciati come task paralleli.
+     * Al primo taglio i task non ancora partiti sono cancellati e quelli in corso si fermano
+     * al prossimo nodo YBWC. Restituisce null se un antenato è stato tagliato nel frattempo.
+     */
+    private AlphaBetaResult ybwcSearch(FastTablutState state, int alpha, int beta, int depthRemaining, int ply,
+                                       SplitPoint parent, SearchContext ctx) {
+        boolean maximizing = state.getTurn().equals(Turn.WHITE);
+
+        if (depthRemaining < YBWC_MIN_SPLIT_DEPTH || !(maximizing || state.getTurn().equals(Turn.BLACK))) {
+            int score = maximizing
+                    ? maxValue(state, alpha, beta, depthRemaining, ply, ctx)
+                    : minValue(state, alpha, beta, depthRemaining, ply, ctx);
+            return new AlphaBetaResult(score, ctx.bestMoves[ply]);
         }
+        // I nodi di split costano clone e fork: qui il flag si legge sempre
+        checkStop(ctx);
+        if (parent != null && parent.isAborted()) return null;
 
-        int maxScore = MIN_VALUE;
-        Action bestMove = possibleActions.get(0); // Default
-
-        if (ttBestMove != null) {
-            FastTablutState nextState = state.clone();
-            if (nextState.applyMove(ttBestMove)) {
-                AlphaBetaResult result = minValue(nextState, alpha, beta, depthRemaining - 1, currentMaxDepth, timeLimit);
+        int oldAlpha = alpha;
+        int oldBeta = beta;
 
-                if (result.getScore() > maxScore) {
-                    maxScore = result.getScore();
-                    bestMove = ttBestMove;
+        long stateKey = state.getZobristKey();
+        long entry = transpositionTable.probe(stateKey);
+        int ttBestMove = NO_MOVE;
+
+        if (entry != 0L) {
+            ttBestMove = TranspositionTable.moveOf(entry);
+            if (TranspositionTable.depthOf(entry) >= depthRemaining && ply > 0) {
+                int ttScore = TranspositionTable.scoreOf(entry);
+                int ttNodeType = TranspositionTable.nodeTypeOf(entry);
+
+                if (ttNodeType == EXACT_SCORE) {
+                    return new AlphaBetaResult(ttScore, ttBestMove);
+                } else if (ttNodeType == LOWER_BOUND) {
+                    alpha = Math.max(alpha, ttScore);
+                } else if (ttNodeType == UPPER_BOUND) {
+                    beta = Math.min(beta, ttScore);
+                }
+                if (alpha >= beta) {
+                    return new AlphaBetaResult(ttScore, ttBestMove);
                 }
-                alpha = Math.max(alpha, maxScore);
             }
         }
 
-        if (alpha < beta) {
-            for (Action action : possibleActions) {
-                if (action.equals(ttBestMove)) continue;
+        int[] possibleMoves = ctx.moves[ply];
+        int moveCount = state.generateMoves(possibleMoves, 0);
 
-                FastTablutState nextState = state.clone();
-                if (!nextState.applyMove(action)) { continue; }
+        if (moveCount == 0) {
+            return new AlphaBetaResult(maximizing ? MIN_VALUE - depthRemaining : MAX_VALUE + depthRemaining, NO_MOVE);
+        }
+        orderMoves(possibleMoves, moveCount, ply, ctx);
 
-                AlphaBetaResult result = minValue(nextState, alpha, beta, depthRemaining - 1, currentMaxDepth, timeLimit);
+        // Il fratello maggiore è la mossa della TT (se valida in questa posizione)
+        for (int i = 1; i < moveCount; i++) {
+            if (possibleMoves[i] == ttBestMove) {
+                possibleMoves[i] = possibleMoves[0];
+                possibleMoves[0] = ttBestMove;
+                break;
+            }
+        }
 
-                if (result.getScore() > maxScore) {
-                    maxScore = result.getScore();
-                    bestMove = action;
-                }
+        // 1. Fratello maggiore, in serie
+        int bestMove = possibleMoves[0];
+        if (!state.makeMove(bestMove)) {
+            throw new IllegalStateException("Mossa generata non valida: " + bestMove);
+        }
+        AlphaBetaResult eldest = ybwcSearch(state, alpha, beta, depthRemaining - 1, ply + 1, parent, ctx);
+        state.unmakeMove();
+        if (eldest == null) return null;
+
+        int bestScore = eldest.getScore();
+        if (maximizing) alpha = Math.max(alpha, bestScore); else beta = Math.min(beta, bestScore);
+
+        // 2. Fratelli minori in parallelo, con la finestra ristretta dal maggiore
+        if (alpha < beta && moveCount > 1) {
+            SplitPoint splitPoint = new SplitPoint(parent, alpha, beta);
+            YbwcTask[] tasks = new YbwcTask[moveCount - 1];
+            int[] taskMoves = Arrays.copyOfRange(possibleMoves, 1, moveCount);
+
+            // Fork in ordine inverso: il worker ripesca per primi i fratelli meglio ordinati
+            for (int i = tasks.length - 1; i >= 0; i--) {
+                FastTablutState child = state.clone();
+                child.applyMove(taskMoves[i]);
+                tasks[i] = new YbwcTask(child, splitPoint, depthRemaining - 1, ply + 1);
+                tasks[i].fork();
+            }
 
-                alpha = Math.max(alpha, maxScore);
+            for (int i = 0; i < tasks.length; i++) {
+                AlphaBetaResult result = tasks[i].join();
+                if (result == null) continue;
+
+                int score = result.getScore();
+                if (maximizing ? score > bestScore : score < bestScore) {
+                    bestScore = score;
+                    bestMove = taskMoves[i];
+                }
+                if (maximizing) {
+                    alpha = Math.max(alpha, bestScore);
+                    splitPoint.alpha = alpha;
+                } else {
+                    beta = Math.min(beta, bestScore);
+                    splitPoint.beta = beta;
+                }
 
                 if (alpha >= beta) {
+                    splitPoint.aborted = true;
+                    for (int j = i + 1; j < tasks.length; j++) {
+                        tasks[j].cancel(false);
+                    }
                     break;
                 }
             }
         }
 
+        // Se un antenato è stato tagliato il punteggio è parziale: non va in TT
+        if (parent != null && parent.isAborted()) return null;
+
         int nodeType;
-        if (maxScore <= oldAlpha) {
+        if (maximizing ? bestScore <= oldAlpha : bestScore <= alpha) {
             nodeType = UPPER_BOUND;
-        } else if (maxScore >= beta) {
+        } else if (maximizing ? bestScore >= beta : bestScore >= oldBeta) {
             nodeType = LOWER_BOUND;
         } else {
             nodeType = EXACT_SCORE;
         }
+        transpositionTable.store(stateKey, bestScore, depthRemaining, nodeType, bestMove);
+
+        return new AlphaBetaResult(bestScore, bestMove);
+    }
+
+    // --- Finestre di aspirazione ---
+
+    private static int aspirationAlpha(int previousScore, int window) {
+        return window > 0 ? Math.max(INITIAL_ALPHA, previousScore - window) : INITIAL_ALPHA;
+    }
 
-        transpositionTable.put(stateKey, new TranspositionEntry(maxScore, depthRemaining, nodeType, bestMove));
+    private static int aspirationBeta(int previousScore, int window) {
+        return window > 0 ? Math.min(INITIAL_BETA, previousScore + window) : INITIAL_BETA;
+    }
 
-        return new AlphaBetaResult(maxScore, bestMove);
+    /**
+     * @return la finestra allargata, oppure 0 (finestra piena) quando supera i punteggi di vittoria.
+     */
+    private int widenAspirationWindow(int window) {
+        long widened = (long) window * Math.max(2, this.aspirationWidening);
+        return widened >= MAX_VALUE ? 0 : (int) widened;
     }
 
-    private AlphaBetaResult minValue(FastTablutState state, int alpha, int beta, int depthRemaining,
-                                     int currentMaxDepth, long timeLimit) {
-        if (System.currentTimeMillis() >= timeLimit) {
-            throw new RuntimeException("Timeout reached in MinValue");
+    /**
+     * Controllo dello stop a campione: una lettura volatile ogni STOP_CHECK_INTERVAL nodi.
+     * Si ferma anche un thread rimasto indietro da una ricerca precedente (searchId cambiato).
+     */
+    private void pollStop(SearchContext ctx) {
+        if (--ctx.stopCountdown > 0) return;
+        ctx.stopCountdown = STOP_CHECK_INTERVAL;
+        checkStop(ctx);
+    }
+
+    private void checkStop(SearchContext ctx) {
+        if (this.stopRequested || ctx.searchId != this.searchId) {
+            throw SEARCH_ABORTED;
         }
+    }
+
+    private SearchContext acquireContext() {
+        SearchContext ctx = ybwcContexts.poll();
+        return prepareContext(ctx != null ? ctx : new SearchContext());
+    }
+
+    private void releaseContext(SearchContext ctx) {
+        ybwcContexts.offer(ctx);
+    }
+
+    // ----------------------------------------------------------------------
+    // 3. MAX VALUE (White) e 4. MIN VALUE (Black)
+    // ----------------------------------------------------------------------
+
+    private int maxValue(FastTablutState state, int alpha, int beta, int depthRemaining, int ply,
+                         SearchContext ctx) {
+        pollStop(ctx);
+        searchedNodes.increment();
 
         if (state.getTurn().equals(Turn.WHITEWIN)) {
-            return new AlphaBetaResult(MAX_VALUE + depthRemaining, null);
+            return ctx.result(ply, MAX_VALUE + depthRemaining, NO_MOVE);
         }
         if (state.getTurn().equals(Turn.BLACKWIN)) {
-            return new AlphaBetaResult(MIN_VALUE - depthRemaining, null);
+            return ctx.result(ply, MIN_VALUE - depthRemaining, NO_MOVE);
         }
 
         if (depthRemaining == 0) {
             // Chiama quiescence con la profondità massima di quiete
-            return quiescenceSearch(state, alpha, beta, timeLimit, MAX_QUIESCENCE_DEPTH);
+            return ctx.result(ply, quiescenceSearch(state, alpha, beta, MAX_QUIESCENCE_DEPTH, ply, ctx), NO_MOVE);
         }
 
+        int oldAlpha = alpha;
 
-        int oldBeta = beta;
         long stateKey = state.getZobristKey();
-        TranspositionEntry entry = transpositionTable.get(stateKey);
+        long entry = transpositionTable.probe(stateKey);
+
+        int ttBestMove = NO_MOVE;
+
+        if (entry != 0L) {
+            // La mossa serve per l'ordinamento anche se l'entry è meno profonda
+            ttBestMove = TranspositionTable.moveOf(entry);
+            if (TranspositionTable.depthOf(entry) >= depthRemaining) {
+                int ttScore = TranspositionTable.scoreOf(entry);
+                int ttNodeType = TranspositionTable.nodeTypeOf(entry);
+
+                if (ttNodeType == EXACT_SCORE) {
+                    return ctx.result(ply, ttScore, ttBestMove);
+                } else if (ttNodeType == LOWER_BOUND) {
+                    alpha = Math.max(alpha, ttScore);
+                } else if (ttNodeType == UPPER_BOUND) {
+                    beta = Math.min(beta, ttScore);
+                }
+                if (alpha >= beta) {
+                    return ctx.result(ply, ttScore, ttBestMove);
+                }
+            }
+        }
+
+        // Vicino all'orizzonte la valutazione statica serve a razoring e futility
+        boolean frontier = isFrontierNode(state, alpha, beta, depthRemaining);
+        boolean tryNullMove = nullMoveAllowed(state, alpha, beta, depthRemaining, ply, ctx);
+        int staticEval = (frontier || tryNullMove) ? evaluateState(state) : 0;
+
+        // Razoring: molto sotto alpha basta la ricerca di quiete per confermarlo
+        if (frontier && razorMarginPawns > 0 && beta - alpha == 1
+                && staticEval + frontierMargin(razorMarginPawns, depthRemaining) <= alpha) {
+            int score = quiescenceSearch(state, alpha, beta, MAX_QUIESCENCE_DEPTH, ply, ctx);
+            if (score <= alpha) {
+                razorCutoffs.increment();
+                return ctx.result(ply, score, NO_MOVE);
+            }
+        }
 
-        Action ttBestMove = null;
+        // Mossa nulla: se anche passando il turno il Nero resta sopra beta, il nodo è tagliato
+        if (tryNullMove && staticEval >= beta) {
+            state.makeNullMove();
+            ctx.nullMoveAt[ply + 1] = true;
+            int score = minValue(state, beta - 1, beta, Math.max(0, depthRemaining - 1 - nullMoveReduction),
+                    ply + 1, ctx);
+            ctx.nullMoveAt[ply + 1] = false;
+            state.unmakeNullMove();
+
+            if (score >= beta) {
+                nullMoveCutoffs.increment();
+                // Una vittoria trovata passando il turno non è dimostrata
+                return ctx.result(ply, score >= MAX_VALUE ? beta : score, NO_MOVE);
+            }
+        }
+
+        // Futility: nessuna mossa tranquilla può riportare il punteggio sopra alpha
+        int futilityScore = staticEval + frontierMargin(futilityMarginPawns, depthRemaining);
+        boolean futile = frontier && futilityMarginPawns > 0 && futilityScore <= alpha;
+
+        MovePicker picker = ctx.pickers[ply];
+        picker.init(state, ttBestMove, ply, ctx);
 
-        if (entry != null && entry.getDepth() >= depthRemaining) {
-            ttBestMove = entry.getBestMove();
+        int maxScore = MIN_VALUE;
+        int bestMove = NO_MOVE;
+        int searchedMoves = 0;
+
+        for (int move = picker.next(); move != NO_MOVE; move = picker.next()) {
+            if (!state.makeMove(move)) { continue; }
+            boolean quiet = state.getLastCaptureCount() == 0;
+
+            if (futile && searchedMoves > 0 && quiet && picker.inQuietStage() && !isFrontierTactical(state, move)) {
+                state.unmakeMove();
+                futilityPrunes.increment();
+                maxScore = Math.max(maxScore, futilityScore);
+                continue;
+            }
+
+            int result = 0;
+            boolean fullDepth = true;
+            int reduction = lateMoveReduction(state, picker, move, searchedMoves, depthRemaining);
+            if (reduction > 0) {
+                // Mossa tardiva: se la ricerca ridotta resta sotto alpha non serve altro
+                reducedSearches.increment();
+                result = minValue(state, alpha, alpha + 1, depthRemaining - 1 - reduction, ply + 1, ctx);
+                fullDepth = result > alpha;
+                if (fullDepth) reductionResearches.increment();
+            }
+            if (fullDepth) {
+                if (principalVariationSearch && searchedMoves > 0) {
+                    // Finestra nulla: basta sapere se la mossa supera alpha
+                    result = minValue(state, alpha, alpha + 1, depthRemaining - 1, ply + 1, ctx);
+                    if (result > alpha && result < beta) {
+                        result = minValue(state, alpha, beta, depthRemaining - 1, ply + 1, ctx);
+                    }
+                } else {
+                    result = minValue(state, alpha, beta, depthRemaining - 1, ply + 1, ctx);
+                }
+            }
+            state.unmakeMove();
+            searchedMoves++;
 
-            if (entry.nodeType == EXACT_SCORE) {
-                return new AlphaBetaResult(entry.getScore(), ttBestMove);
-            } else if (entry.nodeType == LOWER_BOUND) {
-                alpha = Math.max(alpha, entry.getScore());
-            } else if (entry.nodeType == UPPER_BOUND) {
-                beta = Math.min(beta, entry.getScore());
+            if (bestMove == NO_MOVE) bestMove = move;
+            if (result > maxScore) {
+                maxScore = result;
+                bestMove = move;
             }
+
+            alpha = Math.max(alpha, maxScore);
+
             if (alpha >= beta) {
-                return new AlphaBetaResult(entry.getScore(), ttBestMove);
+                if (quiet) recordCutoff(ctx, move, ply, depthRemaining);
+                break;
             }
         }
 
-        List<Action> possibleActions = this.getLegalMoves(state);
+        if (searchedMoves == 0) {
+            return ctx.result(ply, MIN_VALUE - depthRemaining, NO_MOVE);
+        }
 
-        if (possibleActions.isEmpty()) {
-            return new AlphaBetaResult(MAX_VALUE + depthRemaining, null);
+        int nodeType;
+        if (maxScore <= oldAlpha) {
+            nodeType = UPPER_BOUND;
+        } else if (maxScore >= beta) {
+            nodeType = LOWER_BOUND;
+        } else {
+            nodeType = EXACT_SCORE;
         }
 
-        int minScore = MAX_VALUE;
-        Action bestMove = possibleActions.get(0);
+        transpositionTable.store(stateKey, maxScore, depthRemaining, nodeType, bestMove);
+
+        return ctx.result(ply, maxScore, bestMove);
+    }
+
+    private int minValue(FastTablutState state, int alpha, int beta, int depthRemaining, int ply,
+                         SearchContext ctx) {
+        pollStop(ctx);
+        searchedNodes.increment();
+
+        if (state.getTurn().equals(Turn.WHITEWIN)) {
+            return ctx.result(ply, MAX_VALUE + depthRemaining, NO_MOVE);
+        }
+        if (state.getTurn().equals(Turn.BLACKWIN)) {
+            return ctx.result(ply, MIN_VALUE - depthRemaining, NO_MOVE);
+        }
+
+        if (depthRemaining == 0) {
+            // Chiama quiescence con la profondità massima di quiete
+            return ctx.result(ply, quiescenceSearch(state, alpha, beta, MAX_QUIESCENCE_DEPTH, ply, ctx), NO_MOVE);
+        }
 
-        if (ttBestMove != null) {
-            FastTablutState nextState = state.clone();
-            if (nextState.applyMove(ttBestMove)) {
-                AlphaBetaResult result = maxValue(nextState, alpha, beta, depthRemaining - 1, currentMaxDepth, timeLimit);
 
-                if (result.getScore() < minScore) {
-                    minScore = result.getScore();
-                    bestMove = ttBestMove;
+        int oldBeta = beta;
+        long stateKey = state.getZobristKey();
+        long entry = transpositionTable.probe(stateKey);
+
+        int ttBestMove = NO_MOVE;
+
+        if (entry != 0L) {
+            // La mossa serve per l'ordinamento anche se l'entry è meno profonda
+            ttBestMove = TranspositionTable.moveOf(entry);
+            if (TranspositionTable.depthOf(entry) >= depthRemaining) {
+                int ttScore = TranspositionTable.scoreOf(entry);
+                int ttNodeType = TranspositionTable.nodeTypeOf(entry);
+
+                if (ttNodeType == EXACT_SCORE) {
+                    return ctx.result(ply, ttScore, ttBestMove);
+                } else if (ttNodeType == LOWER_BOUND) {
+                    alpha = Math.max(alpha, ttScore);
+                } else if (ttNodeType == UPPER_BOUND) {
+                    beta = Math.min(beta, ttScore);
+                }
+                if (alpha >= beta) {
+                    return ctx.result(ply, ttScore, ttBestMove);
                 }
-                beta = Math.min(beta, minScore);
             }
         }
 
-        if (beta > alpha) {
-            for (Action action : possibleActions) {
-                if (action.equals(ttBestMove)) continue;
+        // Vicino all'orizzonte la valutazione statica serve a razoring e futility
+        boolean frontier = isFrontierNode(state, alpha, beta, depthRemaining);
+        boolean tryNullMove = nullMoveAllowed(state, alpha, beta, depthRemaining, ply, ctx);
+        int staticEval = (frontier || tryNullMove) ? evaluateState(state) : 0;
+
+        // Razoring: molto sopra beta basta la ricerca di quiete per confermarlo
+        if (frontier && razorMarginPawns > 0 && beta - alpha == 1
+                && staticEval - frontierMargin(razorMarginPawns, depthRemaining) >= beta) {
+            int score = quiescenceSearch(state, alpha, beta, MAX_QUIESCENCE_DEPTH, ply, ctx);
+            if (score >= beta) {
+                razorCutoffs.increment();
+                return ctx.result(ply, score, NO_MOVE);
+            }
+        }
 
-                FastTablutState nextState = state.clone();
-                if (!nextState.applyMove(action)) {
-                    continue;
-                }
+        // Mossa nulla: se anche passando il turno il Bianco resta sotto alpha, il nodo è tagliato
+        if (tryNullMove && staticEval <= alpha) {
+            state.makeNullMove();
+            ctx.nullMoveAt[ply + 1] = true;
+            int score = maxValue(state, alpha, alpha + 1, Math.max(0, depthRemaining - 1 - nullMoveReduction),
+                    ply + 1, ctx);
+            ctx.nullMoveAt[ply + 1] = false;
+            state.unmakeNullMove();
+
+            if (score <= alpha) {
+                nullMoveCutoffs.increment();
+                // Una vittoria trovata passando il turno non è dimostrata
+                return ctx.result(ply, score <= MIN_VALUE ? alpha : score, NO_MOVE);
+            }
+        }
 
-                AlphaBetaResult result = maxValue(nextState, alpha, beta, depthRemaining - 1, currentMaxDepth, timeLimit);
+        // Futility: nessuna mossa tranquilla può riportare il punteggio sotto beta
+        int futilityScore = staticEval - frontierMargin(futilityMarginPawns, depthRemaining);
+        boolean futile = frontier && futilityMarginPawns > 0 && futilityScore >= beta;
 
-                if (result.getScore() < minScore) {
-                    minScore = result.getScore();
-                    bestMove = action;
-                }
+        MovePicker picker = ctx.pickers[ply];
+        picker.init(state, ttBestMove, ply, ctx);
 
-                beta = Math.min(beta, minScore);
+        int minScore = MAX_VALUE;
+        int bestMove = NO_MOVE;
+        int searchedMoves = 0;
 
-                if (minScore <= alpha) {
-                    break;
+        for (int move = picker.next(); move != NO_MOVE; move = picker.next()) {
+            if (!state.makeMove(move)) {
+                continue;
+            }
+            boolean quiet = state.getLastCaptureCount() == 0;
+
+            if (futile && searchedMoves > 0 && quiet && picker.inQuietStage() && !isFrontierTactical(state, move)) {
+                state.unmakeMove();
+                futilityPrunes.increment();
+                minScore = Math.min(minScore, futilityScore);
+                continue;
+            }
+
+            int result = 0;
+            boolean fullDepth = true;
+            int reduction = lateMoveReduction(state, picker, move, searchedMoves, depthRemaining);
+            if (reduction > 0) {
+                // Mossa tardiva: se la ricerca ridotta resta sopra beta non serve altro
+                reducedSearches.increment();
+                result = maxValue(state, beta - 1, beta, depthRemaining - 1 - reduction, ply + 1, ctx);
+                fullDepth = result < beta;
+                if (fullDepth) reductionResearches.increment();
+            }
+            if (fullDepth) {
+                if (principalVariationSearch && searchedMoves > 0) {
+                    // Finestra nulla: basta sapere se la mossa scende sotto beta
+                    result = maxValue(state, beta - 1, beta, depthRemaining - 1, ply + 1, ctx);
+                    if (result < beta && result > alpha) {
+                        result = maxValue(state, alpha, beta, depthRemaining - 1, ply + 1, ctx);
+                    }
+                } else {
+                    result = maxValue(state, alpha, beta, depthRemaining - 1, ply + 1, ctx);
                 }
             }
+            state.unmakeMove();
+            searchedMoves++;
+
+            if (bestMove == NO_MOVE) bestMove = move;
+            if (result < minScore) {
+                minScore = result;
+                bestMove = move;
+            }
+
+            beta = Math.min(beta, minScore);
+
+            if (minScore <= alpha) {
+                if (quiet) recordCutoff(ctx, move, ply, depthRemaining);
+                break;
+            }
+        }
+
+        if (searchedMoves == 0) {
+            return ctx.result(ply, MAX_VALUE + depthRemaining, NO_MOVE);
         }
 
         int nodeType;
@@ -473,9 +1889,9 @@ public class AlphaBetaEngine {
             nodeType = EXACT_SCORE;
         }
 
-        transpositionTable.put(stateKey, new TranspositionEntry(minScore, depthRemaining, nodeType, bestMove));
+        transpositionTable.store(stateKey, minScore, depthRemaining, nodeType, bestMove);
 
-        return new AlphaBetaResult(minScore, bestMove);
+        return ctx.result(ply, minScore, bestMove);
     }
 
 
@@ -487,21 +1903,21 @@ public class AlphaBetaEngine {
      * Ricerca solo le mosse "non tranquille" (catture) per stabilizzare la valutazione.
      * Ora include un limite di profondità.
      */
-    private AlphaBetaResult quiescenceSearch(FastTablutState state, int alpha, int beta, long timeLimit, int depth) { // Aggiunto 'depth'
-        if (System.currentTimeMillis() >= timeLimit) {
-            throw new RuntimeException("Timeout reached in Quiescence");
-        }
+    private int quiescenceSearch(FastTablutState state, int alpha, int beta, int depth,
+                                 int ply, SearchContext ctx) {
+        pollStop(ctx);
+        searchedNodes.increment();
 
         if (state.getTurn().equals(Turn.WHITEWIN)) {
-            return new AlphaBetaResult(MAX_VALUE);
+            return MAX_VALUE;
         }
         if (state.getTurn().equals(Turn.BLACKWIN)) {
-            return new AlphaBetaResult(MIN_VALUE);
+            return MIN_VALUE;
         }
 
         // Se la profondità di quiete è esaurita, ci fermiamo e valutiamo
         if (depth == 0) {
-            return new AlphaBetaResult(evaluateState(state));
+            return evaluateState(state);
         }
 
 
@@ -509,31 +1925,31 @@ public class AlphaBetaEngine {
 
         if (state.getTurn().equals(Turn.WHITE)) { // MAX (Bianco)
             if (standPatScore >= beta) {
-                return new AlphaBetaResult(standPatScore);
+                return standPatScore;
             }
             alpha = Math.max(alpha, standPatScore);
         } else { // MIN (Nero)
             if (standPatScore <= alpha) {
-                return new AlphaBetaResult(standPatScore);
+                return standPatScore;
             }
             beta = Math.min(beta, standPatScore);
         }
 
-        List<Action> captureMoves = getCaptureMoves(state);
+        int[] captureMoves = ctx.moves[ply];
+        int captureCount = state.generateCaptureMoves(captureMoves, 0);
 
-        if (captureMoves.isEmpty()) {
-            return new AlphaBetaResult(standPatScore); // Posizione tranquilla
+        if (captureCount == 0) {
+            return standPatScore; // Posizione tranquilla
         }
 
 
-        for (Action action : captureMoves) {
-            FastTablutState nextState = state.clone();
-            if (!nextState.applyMove(action)) continue;
+        for (int i = 0; i < captureCount; i++) {
+            if (!state.makeMove(captureMoves[i])) continue;
 
-            AlphaBetaResult result = quiescenceSearch(nextState, alpha, beta, timeLimit, depth - 1);
+            int score = quiescenceSearch(state, alpha, beta, depth - 1, ply + 1, ctx);
+            state.unmakeMove();
 
             if (state.getTurn().equals(Turn.WHITE)) { // MAX
-                int score = result.getScore();
                 if (score > alpha) {
                     alpha = score;
                 }
@@ -541,7 +1957,6 @@ public class AlphaBetaEngine {
                     break;
                 }
             } else { // MIN
-                int score = result.getScore();
                 if (score < beta) {
                     beta = score;
                 }
@@ -551,26 +1966,7 @@ public class AlphaBetaEngine {
             }
         }
 
-        return new AlphaBetaResult(state.getTurn().equals(Turn.WHITE) ? alpha : beta);
-    }
-
-    /**
-     * Metodo helper per identificare solo le mosse che risultano in una cattura.
-     */
-    private List<Action> getCaptureMoves(FastTablutState state) {
-        List<Action> allMoves = state.generateLegalMoves();
-        int initialPawns = state.whitePawnsCount + state.blackPawnsCount + (state.kingRow != -1 ? 1 : 0);
-
-        return allMoves.stream().filter(action -> {
-            FastTablutState tempState = state.clone();
-            if (!tempState.applyMove(action)) return false;
-
-            int finalPawns = tempState.whitePawnsCount + tempState.blackPawnsCount + (tempState.kingRow != -1 ? 1 : 0);
-
-            return (finalPawns < initialPawns ||
-                    tempState.getTurn().equals(Turn.BLACKWIN) ||
-                    tempState.getTurn().equals(Turn.WHITEWIN));
-        }).collect(Collectors.toList());
+        return state.getTurn().equals(Turn.WHITE) ? alpha : beta;
     }
 
 
@@ -578,115 +1974,16 @@ public class AlphaBetaEngine {
     // 6. FUNZIONE EURISTICA
     // ----------------------------------------------------------------------
 
-    private boolean containsCoord(List<int[]> list, int r, int c) {
-        for (int[] coord : list) { if (coord[0] == r && coord[1] == c) return true; }
-        return false;
-    }
-
-    private int getMinEscapeDistance(int kingR, int kingC) {
-        int minDistance = Integer.MAX_VALUE;
-        for (int[] escape : FastTablutState.ESCAPES) {
-            int distance = Math.abs(kingR - escape[0]) + Math.abs(kingC - escape[1]);
-            minDistance = Math.min(minDistance, distance);
-        }
-        return minDistance;
-    }
-
-    private int evaluateState(FastTablutState state) {
-        if (state.getTurn().equals(Turn.WHITEWIN)) { return MAX_VALUE; }
-        if (state.getTurn().equals(Turn.BLACKWIN)) { return MIN_VALUE; }
-
-        int whiteCount = state.whitePawnsCount;
-        int blackCount = state.blackPawnsCount;
-        int kingR = state.kingRow;
-        int kingC = state.kingCol;
-
-        if (kingR == -1) { return MIN_VALUE; } // Il re è stato catturato
-
-        double kingPositionScore = evalKingPos(state, kingR, kingC);
-        double escapeDistancePenalty = this.weights[11] * getMinEscapeDistance(kingR, kingC);
-        double materialScore = this.weights[9] * whiteCount + this.weights[10] * blackCount;
-
-        // (Fase 3)
-        double kingSafetyScore = evalKingSafety(state, kingR, kingC);
-
-        double totalScore = this.weights[7] * materialScore +
-                this.weights[8] * (kingPositionScore + escapeDistancePenalty) +
-                kingSafetyScore; // Aggiunto il nuovo punteggio
-
-        int finalScore = (int) Math.round(totalScore);
-        finalScore = Math.min(finalScore, HEURISTIC_MAX);
-        finalScore = Math.max(finalScore, HEURISTIC_MIN);
-
-        return finalScore;
-    }
-
     /**
-     * Valuta le vie di fuga principali del Re.
+     * Valutazione statica passando dalla cache: un hit evita le scansioni delle linee del Re.
      */
-    private double evalKingPos(FastTablutState state, int kingR, int kingC) {
-        double score = 0;
-        int[][] directions = {{0, -1}, {0, 1}, {-1, 0}, {1, 0}};
-
-        for (int[] dir : directions) {
-            int dr = dir[0];
-            int dc = dir[1];
-
-            for (int steps = 1; steps < BOARD_SIZE; steps++) {
-                int r = kingR + dr * steps;
-                int c = kingC + dc * steps;
-
-                if (r < 0 || r >= BOARD_SIZE || c < 0 || c >= BOARD_SIZE) { break; }
-
-                byte currentPawn = state.get(r, c);
-                boolean isAdjacent = (steps == 1);
-
-                if (currentPawn == FastTablutState.E && containsCoord(FastTablutState.ESCAPES, r, c)) {
-                    score += this.weights[0]; // [0] Via di Fuga Libera
-                    break;
-                }
-
-                if (currentPawn == FastTablutState.E && isCitadelOrThrone(r, c)) {
-                    if (r == FastTablutState.THRONE[0] && c == FastTablutState.THRONE[1]) {
-                        score += this.weights[2]; // [2] Penalità per blocco da Trono vuoto
-                    } else if (containsCoord(FastTablutState.CITADELS, r, c)) {
-                        score += this.weights[1]; // [1D] Penalità per blocco da Cittadella vuota
-                    }
-                    continue;
-                }
-
-                if (currentPawn == FastTablutState.B) {
-                    score += isAdjacent ? this.weights[6] : this.weights[5]; // [6] Blocco adiacente Nero, [5] Blocco lontano Nero
-                    break;
-                }
-
-                if (currentPawn == FastTablutState.W || currentPawn == FastTablutState.K) {
-                    score += isAdjacent ? this.weights[4] : this.weights[3]; // [4] Blocco adiacente Bianco, [3] Blocco lontano Bianco
-                    break;
-                }
-            }
-        }
-        return score;
-    }
-
-    /**
-     * Valuta la sicurezza immediata del Re controllando le 8 caselle adiacenti. (Fase 3)
-     */
-    private double evalKingSafety(FastTablutState state, int kingR, int kingC) {
-        double score = 0;
-        for (int[] dir : ADJACENT_DIRECTIONS) {
-            int r = kingR + dir[0];
-            int c = kingC + dir[1];
-
-            if (r < 0 || r >= BOARD_SIZE || c < 0 || c >= BOARD_SIZE) continue;
+    private int evaluateState(FastTablutState state) {
+        long key = state.getZobristKey();
+        long cached = evaluationCache.probe(key);
+        if (cached != 0L) return EvaluationCache.scoreOf(cached);
 
-            byte pawn = state.get(r, c);
-        }
+        int score = evaluator.evaluate(state);
+        evaluationCache.store(key, score);
         return score;
     }
-
-    private boolean isCitadelOrThrone(int r, int c) {
-        if (r == FastTablutState.THRONE[0] && c == FastTablutState.THRONE[1]) return true;
-        return containsCoord(FastTablutState.CITADELS, r, c);
-    }
 }
\ No newline at end of file
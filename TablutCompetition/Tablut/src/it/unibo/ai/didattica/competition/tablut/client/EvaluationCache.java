@@ -0,0 +1,63 @@
+package it.unibo.ai.didattica.competition.tablut.client;
+
+import java.util.Arrays;
+
+/**
+ * Cache delle valutazioni statiche a dimensione fissa, condivisa senza lock da tutti i thread
+ * di ricerca. Come nella TranspositionTable ogni entry è (chiave XOR dati, dati): una scrittura
+ * concorrente "strappata" non supera il controllo della chiave e viene letta come un miss.
+ *
+ * Un solo slot per indice, sempre rimpiazzato: la valutazione non dipende dalla ricerca,
+ * quindi le entry non invecchiano e restano valide tra una mossa e l'altra.
+ *
+ * Formato dei dati (64 bit): [0..31] punteggio, [63] entry valida.
+ */
+public class EvaluationCache {
+
+    public static final int DEFAULT_SIZE_MB = 2;
+
+    private static final long VALID_BIT = 1L << 63;
+    private static final long SCORE_MASK = 0xFFFFFFFFL;
+
+    private final long[] table;
+    private final int indexMask;
+
+    /**
+     * @param sizeMb memoria occupata dalla cache; il numero di entry è arrotondato
+     *               per difetto alla potenza di due più vicina.
+     */
+    public EvaluationCache(int sizeMb) {
+        long entries = Math.max(1L, (long) sizeMb * 1024 * 1024 / 16);
+        int entryCount = Integer.highestOneBit((int) Math.min(entries, 1 << 26));
+        this.table = new long[entryCount * 2];
+        this.indexMask = entryCount - 1;
+    }
+
+    /**
+     * @return i dati dell'entry per questa chiave (da decodificare con scoreOf), oppure 0 se assente.
+     */
+    public long probe(long key) {
+        int index = index(key);
+        long data = table[index + 1];
+        return (table[index] ^ data) == key ? data : 0L;
+    }
+
+    public void store(long key, int score) {
+        int index = index(key);
+        long data = VALID_BIT | (score & SCORE_MASK);
+        table[index] = key ^ data;
+        table[index + 1] = data;
+    }
+
+    private int index(long key) {
+        return ((int) (key ^ (key >>> 32)) & indexMask) * 2;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+    }
+
+    public static int scoreOf(long data) {
+        return (int) data;
+    }
+}
@@ -0,0 +1,96 @@
+package it.unibo.ai.didattica.competition.tablut.client;
+
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
+
+/**
+ * Funzione euristica parametrizzata dai pesi di HeuristicWeights, condivisa dai motori
+ * (AlphaBetaEngine, MctsEngine). Il punteggio è sempre dal punto di vista del Bianco.
+ *
+ * È senza stato oltre ai pesi: la stessa istanza può essere usata da più thread.
+ */
+public class HeuristicEvaluator {
+
+    private static final int BOARD_SIZE = 9;
+
+    // --- PUNTEGGI ---
+    // Partita vinta/persa; le posizioni non terminali restano in [HEURISTIC_MIN, HEURISTIC_MAX]
+    static final int MAX_VALUE = 100000;
+    static final int MIN_VALUE = -100000;
+    static final int HEURISTIC_MAX = 50000;
+    static final int HEURISTIC_MIN = -50000;
+
+    // Array statico per le 8 direzioni adiacenti (incluse diagonali)
+    private static final int[][] ADJACENT_DIRECTIONS = {
+            {-1, -1}, {-1, 0}, {-1, 1},
+            { 0, -1},          { 0, 1},
+            { 1, -1}, { 1, 0}, { 1, 1}
+    };
+
+    private final double[] weights;
+    private final int pawnValue;
+
+    public HeuristicEvaluator(double[] weights) {
+        this.weights = weights;
+        // Valore di una pedina in punti di valutazione: unità dei margini di potatura e della scala MCTS
+        this.pawnValue = Math.max(1, (int) Math.round(Math.abs(weights[7])
+                * Math.max(Math.abs(weights[9]), Math.abs(weights[10]))));
+    }
+
+    public double[] getWeights() {
+        return this.weights;
+    }
+
+    public int getPawnValue() {
+        return this.pawnValue;
+    }
+
+    public int evaluate(FastTablutState state) {
+        if (state.getTurn().equals(Turn.WHITEWIN)) { return MAX_VALUE; }
+        if (state.getTurn().equals(Turn.BLACKWIN)) { return MIN_VALUE; }
+
+        int whiteCount = state.whitePawnsCount;
+        int blackCount = state.blackPawnsCount;
+        int kingR = state.kingRow;
+        int kingC = state.kingCol;
+
+        if (kingR == -1) { return MIN_VALUE; } // Il re è stato catturato
+
+        // Termini delle linee del Re e distanza dalla fuga mantenuti da FastTablutState: qui solo i pesi
+        double kingPositionScore = 0;
+        for (int term = 0; term < FastTablutState.KING_LINE_TERMS; term++) {
+            kingPositionScore += this.weights[term] * state.getKingLineTerm(term);
+        }
+        double escapeDistancePenalty = this.weights[11] * state.getKingEscapeDistance();
+        double materialScore = this.weights[9] * whiteCount + this.weights[10] * blackCount;
+
+        // (Fase 3)
+        double kingSafetyScore = evalKingSafety(state, kingR, kingC);
+
+        double totalScore = this.weights[7] * materialScore +
+                this.weights[8] * (kingPositionScore + escapeDistancePenalty) +
+                kingSafetyScore; // Aggiunto il nuovo punteggio
+
+        int finalScore = (int) Math.round(totalScore);
+        finalScore = Math.min(finalScore, HEURISTIC_MAX);
+        finalScore = Math.max(finalScore, HEURISTIC_MIN);
+
+        return finalScore;
+    }
+
+    /**
+     * Valuta la sicurezza immediata del Re controllando le 8 caselle adiacenti. (Fase 3)
+     */
+    private double evalKingSafety(FastTablutState state, int kingR, int kingC) {
+        double score = 0;
+        for (int[] dir : ADJACENT_DIRECTIONS) {
+            int r = kingR + dir[0];
+            int c = kingC + dir[1];
+
+            if (r < 0 || r >= BOARD_SIZE || c < 0 || c >= BOARD_SIZE) continue;
+
+            byte pawn = state.get(r, c);
+        }
+        return score;
+    }
+}
@@ -0,0 +1,577 @@
+package it.unibo.ai.didattica.competition.tablut.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import it.unibo.ai.didattica.competition.tablut.domain.Action;
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
+
+/**
+ * Motore Monte Carlo Tree Search, alternativo ad AlphaBetaEngine.
+ *
+ * - Selezione UCT oppure PUCT (default), con probabilità a priori date da un softmax della
+ *   valutazione euristica dei figli.
+ * - Un albero condiviso da N_CPUS thread: chi scende lungo un ramo vi lascia una perdita virtuale
+ *   (VIRTUAL_LOSS visite senza vittorie) finché non ne risale, così gli altri thread ne esplorano altri.
+ * - Playout brevi in-place (makeMove/unmakeMove) con mosse scelte a torneo dalla funzione euristica;
+ *   alla fine del playout la valutazione è convertita in probabilità di vittoria con una sigmoide.
+ * - Riuso dell'albero: il sottoalbero della posizione successiva (figlio o nipote della radice
+ *   precedente, riconosciuto dalla Zobrist Key) diventa la nuova radice; il pondering lo fa crescere.
+ *
+ * I valori nei nodi sono dal punto di vista di chi ha giocato la mossa che porta al nodo.
+ */
+public class MctsEngine implements SearchEngine {
+
+    private static final int NO_MOVE = FastTablutState.NO_MOVE;
+    private static final int N_CPUS = Runtime.getRuntime().availableProcessors();
+
+    public enum Selection { UCT, PUCT }
+
+    // --- SELEZIONE ---
+    private static final double DEFAULT_UCT_EXPLORATION = 1.4;
+    private static final double DEFAULT_PUCT_EXPLORATION = 2.5;
+    // Valore iniziale di un figlio mai visitato (PUCT): quello del padre, un po' pessimista
+    private static final double FIRST_PLAY_REDUCTION = 0.1;
+    private static final int VIRTUAL_LOSS = 3;
+    // Temperatura del softmax delle probabilità a priori, in pedine
+    private static final double PRIOR_TEMPERATURE_PAWNS = 2.0;
+
+    // --- ESPANSIONE E MEMORIA ---
+    // Visite reali di una foglia prima di espanderla: evita di allocare i figli dei nodi visti una volta
+    private static final int DEFAULT_EXPANSION_VISITS = 4;
+    // Circa 60 byte per nodo: 2M nodi restano sotto i 150 MB
+    private static final int DEFAULT_MAX_NODES = 2_000_000;
+    // Profondità massima dell'albero più lunghezza del playout: deve restare sotto lo stack di undo (128)
+    private static final int MAX_TREE_DEPTH = 64;
+    private static final int MAX_PLAYOUT_PLIES = 48;
+
+    // --- PLAYOUT ---
+    private static final int DEFAULT_PLAYOUT_PLIES = 8;
+    // Mosse a caso confrontate con la funzione euristica a ogni semimossa del playout
+    private static final int PLAYOUT_CANDIDATES = 3;
+    // Percentuale di semimosse giocate del tutto a caso, per non ripetere sempre la stessa linea
+    private static final int PLAYOUT_RANDOM_PERCENT = 10;
+    // Scala della sigmoide valutazione -> probabilità di vittoria, in pedine
+    private static final double VALUE_SCALE_PAWNS = 3.0;
+
+    // --- TEMPO ---
+    private static final long POLL_MILLIS = 10L;
+    // Le "iterazioni" per il TimeManager sono i raddoppi dei playout, a partire da questo numero
+    private static final long ITERATION_BASE_PLAYOUTS = 1024L;
+
+    /**
+     * Nodo dell'albero. visits e valueSum contano solo le simulazioni concluse; inFlight le
+     * simulazioni in corso che lo attraversano (perdita virtuale). Gli aggiornamenti sono
+     * sincronizzati sul nodo, le letture della selezione no (bastano valori recenti).
+     */
+    private static final class Node {
+        final int move;
+        final long key;
+        final float prior;
+        // true se move è del Bianco
+        final boolean whiteMoved;
+        // true se la partita è finita con la vittoria di chi ha giocato move
+        volatile boolean terminal;
+        volatile Node[] children;
+        volatile int visits;
+        volatile int inFlight;
+        volatile double valueSum;
+
+        Node(int move, long key, float prior, boolean whiteMoved, boolean terminal) {
+            this.move = move; this.key = key; this.prior = prior;
+            this.whiteMoved = whiteMoved; this.terminal = terminal;
+        }
+
+        synchronized void addVirtualLoss() {
+            inFlight++;
+        }
+
+        synchronized void update(double whiteValue) {
+            inFlight--;
+            visits++;
+            valueSum += whiteMoved ? whiteValue : 1.0 - whiteValue;
+        }
+
+        double meanValue() {
+            int n = visits;
+            return n == 0 ? 0.5 : valueSum / n;
+        }
+    }
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final HeuristicEvaluator evaluator;
+    private final ExecutorService executorService;
+
+    private volatile Selection selection = Selection.PUCT;
+    private volatile double exploration = DEFAULT_PUCT_EXPLORATION;
+    private volatile int expansionVisits = DEFAULT_EXPANSION_VISITS;
+    private volatile int maxNodes = DEFAULT_MAX_NODES;
+    private volatile int playoutPlies = DEFAULT_PLAYOUT_PLIES;
+
+    private volatile boolean stopRequested = false;
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private final LongAdder playouts = new LongAdder();
+
+    // Albero della ricerca precedente (o del pondering), da cui ripartire alla mossa successiva
+    private Node lastRoot;
+    private List<Future<?>> ponderWorkers;
+
+    public MctsEngine(double[] weights) {
+        this.evaluator = new HeuristicEvaluator(weights);
+        this.executorService = Executors.newFixedThreadPool(N_CPUS);
+    }
+
+    /**
+     * Formula di selezione; l'esplorazione torna al default della formula scelta.
+     */
+    public void setSelection(Selection selection) {
+        this.selection = selection;
+        this.exploration = selection == Selection.UCT ? DEFAULT_UCT_EXPLORATION : DEFAULT_PUCT_EXPLORATION;
+    }
+
+    public Selection getSelection() { return this.selection; }
+
+    public void setExploration(double exploration) { this.exploration = exploration; }
+
+    public double getExploration() { return this.exploration; }
+
+    /**
+     * Semimosse di ogni playout: 0 valuta direttamente la foglia con la funzione euristica.
+     */
+    public void setPlayoutPlies(int plies) {
+        this.playoutPlies = Math.max(0, Math.min(plies, MAX_PLAYOUT_PLIES));
+    }
+
+    public int getPlayoutPlies() { return this.playoutPlies; }
+
+    /**
+     * @param expansionVisits visite di una foglia prima di espanderla
+     * @param maxNodes        oltre questo numero di nodi l'albero smette di crescere
+     */
+    public void setTreeLimits(int expansionVisits, int maxNodes) {
+        this.expansionVisits = Math.max(1, expansionVisits);
+        this.maxNodes = maxNodes;
+    }
+
+    public long getPlayouts() { return playouts.sum(); }
+
+    public int getNodeCount() { return nodeCount.get(); }
+
+    @Override
+    public void shutdown() {
+        stopPondering();
+        stop();
+        executorService.shutdownNow();
+    }
+
+    public void stop() {
+        this.stopRequested = true;
+    }
+
+    // ----------------------------------------------------------------------
+    // 1. DECISIONE E PONDERING
+    // ----------------------------------------------------------------------
+
+    /**
+     * I thread simulano fino al limite hard; il TimeManager è consultato a ogni raddoppio dei playout,
+     * con la mossa più visitata e il suo valore convertito in punteggio euristico.
+     */
+    @Override
+    public Action getBestMove(FastTablutState currentState, TimeManager timeManager) {
+        boolean whiteToMove = currentState.getTurn().equals(Turn.WHITE);
+        timeManager.start(whiteToMove);
+        final long timeLimit = timeManager.getHardDeadline();
+
+        stopPondering();
+        Node root = prepareRoot(currentState);
+        Node[] children = root.children;
+
+        if (children.length == 0) {
+            System.out.println("MCTS: Nessuna mossa legale disponibile. Ritorno null.");
+            return null;
+        }
+        if (children.length == 1) {
+            Action onlyMove = currentState.toAction(children[0].move);
+            System.out.println("MCTS: Solo una mossa legale disponibile. Ritorno: " + onlyMove);
+            return onlyMove;
+        }
+        for (Node child : children) {
+            if (child.terminal) {
+                Action win = currentState.toAction(child.move);
+                System.out.println("MCTS: Vittoria immediata disponibile. Ritorno: " + win);
+                return win;
+            }
+        }
+
+        int reusedVisits = root.visits;
+        this.stopRequested = false;
+        this.playouts.reset();
+        List<Future<?>> workers = startWorkers(root, currentState);
+
+        try {
+            long checkpoint = ITERATION_BASE_PLAYOUTS;
+            int iteration = 0;
+            while (System.currentTimeMillis() < timeLimit) {
+                Thread.sleep(Math.max(1L, Math.min(POLL_MILLIS, timeLimit - System.currentTimeMillis())));
+                if (playouts.sum() < checkpoint) continue;
+                checkpoint *= 2;
+                iteration++;
+                Node best = mostVisited(root);
+                if (!timeManager.shouldContinue(iteration, best.move, whiteScore(best))) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stop();
+            awaitWorkers(workers);
+        }
+
+        Node best = mostVisited(root);
+        System.out.printf("MCTS: %d playout (%d riusati), %d nodi, mossa con %d visite, valore %.3f%n",
+                playouts.sum(), reusedVisits, nodeCount.get(), best.visits, best.meanValue());
+        return currentState.toAction(best.move);
+    }
+
+    /**
+     * Pondering: i thread continuano a far crescere l'albero della posizione con l'avversario
+     * al tratto finché non arriva la sua mossa; il nodo della risposta effettiva diventa la radice.
+     */
+    @Override
+    public void startPondering(FastTablutState opponentToMove) {
+        stopPondering();
+        Turn turn = opponentToMove.getTurn();
+        if (!turn.equals(Turn.WHITE) && !turn.equals(Turn.BLACK)) return;
+
+        Node root = prepareRoot(opponentToMove);
+        if (root.children.length == 0) return;
+
+        this.stopRequested = false;
+        this.playouts.reset();
+        this.ponderWorkers = startWorkers(root, opponentToMove);
+    }
+
+    @Override
+    public void stopPondering() {
+        List<Future<?>> workers = this.ponderWorkers;
+        if (workers == null) return;
+        this.ponderWorkers = null;
+        stop();
+        awaitWorkers(workers);
+        System.out.println("MCTS: Pondering fermato dopo " + playouts.sum() + " playout.");
+    }
+
+    private List<Future<?>> startWorkers(Node root, FastTablutState rootState) {
+        List<Future<?>> workers = new ArrayList<>(N_CPUS);
+        for (int t = 0; t < N_CPUS; t++) {
+            final FastTablutState state = rootState.clone();
+            workers.add(executorService.submit(() -> runWorker(root, state)));
+        }
+        return workers;
+    }
+
+    private void awaitWorkers(List<Future<?>> workers) {
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.err.println("MCTS: Errore in un thread di ricerca: " + e.getCause());
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // 2. RIUSO DELL'ALBERO
+    // ----------------------------------------------------------------------
+
+    /**
+     * Cerca la posizione tra la radice precedente, i suoi figli e i suoi nipoti; se non c'è
+     * parte da un albero nuovo. La radice restituita è sempre espansa.
+     */
+    private Node prepareRoot(FastTablutState state) {
+        long key = state.getZobristKey();
+        Node root = findReusableNode(this.lastRoot, key);
+        if (root == null || root.terminal) {
+            root = new Node(NO_MOVE, key, 1.0f, !state.getTurn().equals(Turn.WHITE), false);
+            nodeCount.set(1);
+        } else {
+            nodeCount.set(countNodes(root));
+        }
+        if (root.children == null) {
+            expand(root, state.clone(), new int[FastTablutState.MAX_MOVES]);
+        }
+        this.lastRoot = root;
+        return root;
+    }
+
+    private static Node findReusableNode(Node previous, long key) {
+        if (previous == null) return null;
+        if (previous.key == key) return previous;
+        Node[] children = previous.children;
+        if (children == null) return null;
+        for (Node child : children) {
+            if (child.key == key) return child;
+            Node[] grandChildren = child.children;
+            if (grandChildren == null) continue;
+            for (Node grandChild : grandChildren) {
+                if (grandChild.key == key) return grandChild;
+            }
+        }
+        return null;
+    }
+
+    private static int countNodes(Node root) {
+        int count = 0;
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            count++;
+            Node[] children = node.children;
+            if (children == null) continue;
+            for (Node child : children) pending.push(child);
+        }
+        return count;
+    }
+
+    // ----------------------------------------------------------------------
+    // 3. SIMULAZIONI
+    // ----------------------------------------------------------------------
+
+    private void runWorker(Node root, FastTablutState state) {
+        Node[] path = new Node[MAX_TREE_DEPTH + 1];
+        int[] moves = new int[FastTablutState.MAX_MOVES];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (!stopRequested) {
+            simulate(root, state, path, moves, random);
+            playouts.increment();
+        }
+    }
+
+    /**
+     * Una simulazione: selezione fino a una foglia (espandendola se visitata abbastanza),
+     * playout, propagazione del risultato. Lo stato torna alla radice alla fine.
+     */
+    private void simulate(Node root, FastTablutState state, Node[] path, int[] moves, ThreadLocalRandom random) {
+        Node node = root;
+        int depth = 0;
+        path[0] = root;
+        root.addVirtualLoss();
+
+        while (!node.terminal && depth < MAX_TREE_DEPTH) {
+            Node[] children = node.children;
+            if (children == null) {
+                if (node.visits < expansionVisits || nodeCount.get() >= maxNodes) break;
+                expand(node, state, moves);
+                children = node.children;
+                if (children.length == 0) break;
+            }
+            Node child = selectChild(node, children);
+            state.makeMove(child.move);
+            child.addVirtualLoss();
+            path[++depth] = child;
+            node = child;
+        }
+
+        double whiteValue;
+        if (node.terminal) {
+            whiteValue = node.whiteMoved ? 1.0 : 0.0;
+        } else {
+            whiteValue = playout(state, moves, random);
+        }
+
+        for (int d = depth; d >= 0; d--) {
+            path[d].update(whiteValue);
+            if (d > 0) state.unmakeMove();
+        }
+    }
+
+    private Node selectChild(Node node, Node[] children) {
+        double c = this.exploration;
+        int parentVisits = node.visits + node.inFlight * VIRTUAL_LOSS;
+        boolean uct = this.selection == Selection.UCT;
+        double explorationBase = uct ? Math.log(Math.max(1, parentVisits)) : Math.sqrt(Math.max(1, parentVisits));
+        // Valore di chi muove nel nodo: l'opposto di quello di chi vi è arrivato
+        double firstPlayValue = 1.0 - node.meanValue() - FIRST_PLAY_REDUCTION;
+
+        Node best = children[0];
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (Node child : children) {
+            int n = child.visits + child.inFlight * VIRTUAL_LOSS;
+            double score;
+            if (child.terminal) {
+                score = Double.MAX_VALUE;
+            } else if (uct) {
+                // Figli mai visitati per primi, nell'ordine delle probabilità a priori
+                score = n == 0 ? 1e9 + child.prior : child.valueSum / n + c * Math.sqrt(explorationBase / n);
+            } else {
+                double q = n == 0 ? firstPlayValue : child.valueSum / n;
+                score = q + c * child.prior * explorationBase / (1 + n);
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Crea i figli del nodo (state è la sua posizione): per ciascuno chiave, esito immediato e
+     * probabilità a priori dalla valutazione del figlio dal punto di vista di chi muove.
+     * Senza mosse legali chi muove perde: il nodo diventa terminale.
+     */
+    private void expand(Node node, FastTablutState state, int[] moves) {
+        synchronized (node) {
+            if (node.children != null) return;
+
+            boolean whiteToMove = state.getTurn().equals(Turn.WHITE);
+            Turn win = whiteToMove ? Turn.WHITEWIN : Turn.BLACKWIN;
+            int count = state.generateMoves(moves, 0);
+            if (count == 0) {
+                node.terminal = true;
+                node.children = NO_CHILDREN;
+                return;
+            }
+
+            long[] keys = new long[count];
+            boolean[] wins = new boolean[count];
+            double[] logits = new double[count];
+            double maxLogit = Double.NEGATIVE_INFINITY;
+            double temperature = PRIOR_TEMPERATURE_PAWNS * evaluator.getPawnValue();
+            for (int i = 0; i < count; i++) {
+                state.makeMove(moves[i]);
+                keys[i] = state.getZobristKey();
+                wins[i] = state.getTurn().equals(win);
+                int eval = evaluator.evaluate(state);
+                state.unmakeMove();
+                logits[i] = (whiteToMove ? eval : -eval) / temperature;
+                maxLogit = Math.max(maxLogit, logits[i]);
+            }
+
+            double sum = 0;
+            for (int i = 0; i < count; i++) {
+                logits[i] = Math.exp(logits[i] - maxLogit);
+                sum += logits[i];
+            }
+
+            Node[] children = new Node[count];
+            for (int i = 0; i < count; i++) {
+                children[i] = new Node(moves[i], keys[i], (float) (logits[i] / sum), whiteToMove, wins[i]);
+            }
+            // Ordine per probabilità decrescente: a parità di punteggio la selezione preferisce le migliori
+            Arrays.sort(children, (a, b) -> Float.compare(b.prior, a.prior));
+            nodeCount.addAndGet(count);
+            node.children = children;
+        }
+    }
+
+    /**
+     * Playout in-place di al più playoutPlies semimosse.
+     * @return probabilità di vittoria del Bianco alla fine del playout.
+     */
+    private double playout(FastTablutState state, int[] moves, ThreadLocalRandom random) {
+        int made = 0;
+        double whiteValue = -1.0;
+        int plies = this.playoutPlies;
+
+        while (made < plies) {
+            Turn turn = state.getTurn();
+            if (!turn.equals(Turn.WHITE) && !turn.equals(Turn.BLACK)) break;
+            int move = choosePlayoutMove(state, moves, random);
+            if (move == NO_MOVE) {
+                // Nessuna mossa legale: perde chi ha il turno
+                whiteValue = turn.equals(Turn.WHITE) ? 0.0 : 1.0;
+                break;
+            }
+            state.makeMove(move);
+            made++;
+        }
+
+        if (whiteValue < 0) whiteValue = leafValue(state);
+        while (made-- > 0) state.unmakeMove();
+        return whiteValue;
+    }
+
+    /**
+     * Mossa a torneo: la migliore per chi muove, secondo la funzione euristica, tra alcune mosse
+     * a caso e una cattura a caso (le fughe del Re sono tra le catture del Bianco).
+     */
+    private int choosePlayoutMove(FastTablutState state, int[] moves, ThreadLocalRandom random) {
+        int count = state.generateMoves(moves, 0);
+        if (count == 0) return NO_MOVE;
+        if (random.nextInt(100) < PLAYOUT_RANDOM_PERCENT) return moves[random.nextInt(count)];
+
+        boolean whiteToMove = state.getTurn().equals(Turn.WHITE);
+        int bestMove = NO_MOVE;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < PLAYOUT_CANDIDATES; i++) {
+            int move = moves[random.nextInt(count)];
+            int score = scorePlayoutMove(state, move, whiteToMove);
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+        }
+
+        // Il buffer si può riusare: le mosse a caso sono già state valutate
+        int captures = state.generateCaptureMoves(moves, 0);
+        if (captures > 0) {
+            int move = moves[random.nextInt(captures)];
+            int score = scorePlayoutMove(state, move, whiteToMove);
+            if (score > bestScore) bestMove = move;
+        }
+        return bestMove;
+    }
+
+    private int scorePlayoutMove(FastTablutState state, int move, boolean whiteToMove) {
+        if (!state.makeMove(move)) return Integer.MIN_VALUE;
+        int eval = evaluator.evaluate(state);
+        state.unmakeMove();
+        return whiteToMove ? eval : -eval;
+    }
+
+    private double leafValue(FastTablutState state) {
+        Turn turn = state.getTurn();
+        if (turn.equals(Turn.WHITEWIN)) return 1.0;
+        if (turn.equals(Turn.BLACKWIN)) return 0.0;
+        double scale = VALUE_SCALE_PAWNS * evaluator.getPawnValue();
+        return 1.0 / (1.0 + Math.exp(-evaluator.evaluate(state) / scale));
+    }
+
+    // ----------------------------------------------------------------------
+    // 4. SCELTA DELLA MOSSA
+    // ----------------------------------------------------------------------
+
+    private static Node mostVisited(Node root) {
+        Node best = root.children[0];
+        for (Node child : root.children) {
+            if (child.visits > best.visits) best = child;
+        }
+        return best;
+    }
+
+    /**
+     * Valore del nodo riportato sulla scala della funzione euristica, dal punto di vista del Bianco
+     * (inverso della sigmoide dei playout), per il TimeManager.
+     */
+    private int whiteScore(Node node) {
+        double value = Math.min(0.999, Math.max(0.001, node.meanValue()));
+        if (!node.whiteMoved) value = 1.0 - value;
+        double scale = VALUE_SCALE_PAWNS * evaluator.getPawnValue();
+        return (int) Math.round(scale * Math.log(value / (1.0 - value)));
+    }
+}
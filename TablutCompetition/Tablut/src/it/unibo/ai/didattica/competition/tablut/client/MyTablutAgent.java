@@ -1,6 +1,9 @@
 package it.unibo.ai.didattica.competition.tablut.client;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import it.unibo.ai.didattica.competition.tablut.domain.Action;
 import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
 import it.unibo.ai.didattica.competition.tablut.domain.State;
@@ -9,13 +12,24 @@ import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
 
 
 /**
- * Agente Tablut: gestisce I/O e delega la logica di ricerca (Alpha-Beta)
- * all'AlphaBetaEngine, iniettando i pesi.
+ * Agente Tablut: gestisce I/O e delega la logica di ricerca al motore scelto
+ * (AlphaBetaEngine di default, oppure MctsEngine), iniettando i pesi.
+ *
+ * Uso: java ...MyTablutAgent ruolo [timeout=59] [ip=localhost] [--engine=alphabeta|mcts]
+ *      [--mode=ROOT_SPLIT|LAZY_SMP|YBWC] [--selection=PUCT|UCT] [--no-ponder]
  */
 public class MyTablutAgent extends TablutClient {
 
-    private final AlphaBetaEngine aiEngine;
+    // Margine per latenza di rete e serializzazione, sottratto al timeout del server
+    private static final long NETWORK_MARGIN_MILLIS = 2200L;
+
+    public static final String ENGINE_ALPHA_BETA = "alphabeta";
+    public static final String ENGINE_MCTS = "mcts";
+
+    private final SearchEngine aiEngine;
+    private final OpeningBook openingBook;
     private final int timeoutInSeconds;
+    private boolean pondering = true;
 
     public MyTablutAgent(String player, String name, int timeout) throws IOException {
         super(player, name, timeout);
@@ -24,28 +38,89 @@ public class MyTablutAgent extends TablutClient {
         // FASE 3.1: INIEZIONE DEI PESI INIZIALI
         double[] initialWeights = HeuristicWeights.INITIAL_WEIGHTS;
         this.aiEngine = new AlphaBetaEngine(this.getPlayer(), initialWeights);
+        this.openingBook = loadOpeningBook();
 
         System.out.println("Agente " + name + " (" + player + ") inizializzato con motore AI modulare.");
     }
 
     public MyTablutAgent(String player, String name, int timeout, String ipAddress) throws IOException {
+        this(player, name, timeout, ipAddress, ENGINE_ALPHA_BETA);
+    }
+
+    /**
+     * @param engineName ENGINE_ALPHA_BETA oppure ENGINE_MCTS
+     */
+    public MyTablutAgent(String player, String name, int timeout, String ipAddress, String engineName) throws IOException {
         super(player, name, timeout, ipAddress);
         this.timeoutInSeconds = timeout;
 
         double[] initialWeights = HeuristicWeights.INITIAL_WEIGHTS;
-        this.aiEngine = new AlphaBetaEngine(this.getPlayer(), initialWeights);
+        if (ENGINE_MCTS.equals(engineName)) {
+            this.aiEngine = new MctsEngine(initialWeights);
+        } else {
+            this.aiEngine = new AlphaBetaEngine(this.getPlayer(), initialWeights);
+        }
+        this.openingBook = loadOpeningBook();
 
-        System.out.println("Agente " + name + " (" + player + ") inizializzato con motore AI modulare.");
+        System.out.println("Agente " + name + " (" + player + ") inizializzato con motore " + engineName + ".");
+    }
+
+    /**
+     * Il motore in uso, per configurarlo (ad esempio la modalità di parallelismo dell'alpha-beta).
+     */
+    public SearchEngine getEngine() {
+        return this.aiEngine;
+    }
+
+    private static OpeningBook loadOpeningBook() {
+        OpeningBook book = OpeningBook.load(Paths.get(OpeningBook.DEFAULT_FILE));
+        if (book != null) {
+            System.out.println("Libro di aperture caricato: " + book.size() + " entry.");
+        }
+        return book;
+    }
+
+    /**
+     * Attiva la ricerca sul tempo dell'avversario tra una mossa e l'altra (default: attiva).
+     */
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
     }
 
     public static void main(String[] args) throws IOException {
-        String role = args[0];
+        // Opzioni "--nome=valore" in qualunque posizione, il resto sono argomenti posizionali
+        List<String> positional = new ArrayList<>();
+        String engineName = ENGINE_ALPHA_BETA;
+        String searchMode = null;
+        String selection = null;
+        boolean pondering = true;
+        for (String arg : args) {
+            if (arg.startsWith("--engine=")) {
+                engineName = arg.substring("--engine=".length()).toLowerCase();
+            } else if (arg.startsWith("--mode=")) {
+                searchMode = arg.substring("--mode=".length()).toUpperCase();
+            } else if (arg.startsWith("--selection=")) {
+                selection = arg.substring("--selection=".length()).toUpperCase();
+            } else if (arg.equals("--no-ponder")) {
+                pondering = false;
+            } else if (arg.startsWith("--")) {
+                System.err.println("Opzione sconosciuta, ignorata: " + arg);
+            } else {
+                positional.add(arg);
+            }
+        }
+        if (!engineName.equals(ENGINE_ALPHA_BETA) && !engineName.equals(ENGINE_MCTS)) {
+            System.err.println("Motore sconosciuto, uso il default: " + ENGINE_ALPHA_BETA);
+            engineName = ENGINE_ALPHA_BETA;
+        }
+
+        String role = positional.get(0);
         String name = "4bits";
         int timeout = 59;
 
-        if (args.length >= 2) {
+        if (positional.size() >= 2) {
             try {
-                timeout = Integer.parseInt(args[1]);
+                timeout = Integer.parseInt(positional.get(1));
             } catch (NumberFormatException e) {
                 System.err.println("Timeout non valido, uso il default: 59");
                 timeout = 59;
@@ -53,13 +128,26 @@ public class MyTablutAgent extends TablutClient {
         }
 
         String ip = "localhost";
-        if (args.length >= 3) {
-            ip = args[2];
+        if (positional.size() >= 3) {
+            ip = positional.get(2);
         }
 
-        System.out.println("Inizializzazione di " + name + " come " + role + " con timeout " + timeout + "s @ " + ip);
+        System.out.println("Inizializzazione di " + name + " come " + role + " con timeout " + timeout + "s @ " + ip
+                + ", motore " + engineName);
 
-        TablutClient client = new MyTablutAgent(role, name, timeout, ip);        client.run();
+        MyTablutAgent client = new MyTablutAgent(role, name, timeout, ip, engineName);
+        client.setPondering(pondering);
+        try {
+            if (searchMode != null && client.getEngine() instanceof AlphaBetaEngine) {
+                ((AlphaBetaEngine) client.getEngine()).setSearchMode(AlphaBetaEngine.SearchMode.valueOf(searchMode));
+            }
+            if (selection != null && client.getEngine() instanceof MctsEngine) {
+                ((MctsEngine) client.getEngine()).setSelection(MctsEngine.Selection.valueOf(selection));
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Valore non valido, uso il default: " + e.getMessage());
+        }
+        client.run();
     }
 
     @Override
@@ -105,7 +193,18 @@ public class MyTablutAgent extends TablutClient {
             if (this.getPlayer().equals(currentState.getTurn())) {
 
                 FastTablutState fastState = FastTablutState.fromState(currentState);
-                Action bestAction = aiEngine.getBestMove(fastState, this.timeoutInSeconds - 2);
+                Action bestAction;
+                int bookMove = this.openingBook != null ? this.openingBook.probe(fastState) : FastTablutState.NO_MOVE;
+                if (bookMove != FastTablutState.NO_MOVE) {
+                    // Posizione nota: si gioca subito e si risparmia tutto il budget
+                    bestAction = fastState.toAction(bookMove);
+                    System.out.println("Mossa dal libro di aperture.");
+                } else {
+                    // Limiti soft/hard: le mosse facili lasciano tempo a quelle critiche
+                    TimeManager timeManager = TimeManager.adaptive(this.timeoutInSeconds * 1000L - NETWORK_MARGIN_MILLIS);
+                    bestAction = aiEngine.getBestMove(fastState, timeManager);
+                    System.out.println("Tempo di ricerca: " + timeManager.getElapsedMillis() + " ms");
+                }
 
                 if (bestAction != null) {
                     System.out.println("Mossa scelta: " + bestAction.toString());
@@ -114,6 +213,10 @@ public class MyTablutAgent extends TablutClient {
                     } catch (ClassNotFoundException | IOException e) {
                         e.printStackTrace();
                     }
+                    // Mentre si attende la risposta, il motore cerca sul tempo dell'avversario
+                    if (this.pondering && fastState.applyMove(bestAction)) {
+                        aiEngine.startPondering(fastState);
+                    }
                 } else {
                     System.err.println("Impossibile trovare una mossa valida (motore AI bloccato o nessuna mossa legale).");
                 }
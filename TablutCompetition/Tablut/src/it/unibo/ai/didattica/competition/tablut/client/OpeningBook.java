@@ -0,0 +1,154 @@
+package it.unibo.ai.didattica.competition.tablut.client;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
+import it.unibo.ai.didattica.competition.tablut.domain.StateTablut;
+
+/**
+ * Libro di aperture in sola lettura, mappato in memoria all'avvio.
+ *
+ * Formato del file (big-endian):
+ * header: magic "TBOK", versione, chiave Zobrist della posizione iniziale, numero di entry;
+ * entry da 12 byte ordinate per chiave: chiave Zobrist (8), mossa (2), peso (2, senza segno).
+ * Una posizione può avere più entry consecutive: la mossa è scelta a caso in proporzione al peso.
+ *
+ * Le chiavi dipendono dalle tabelle Zobrist di FastTablutState: la chiave della posizione
+ * iniziale nell'header permette di scartare un libro generato con tabelle diverse.
+ * Il file si genera con OpeningBookBuilder.
+ */
+public class OpeningBook {
+
+    public static final String DEFAULT_FILE = "opening.book";
+
+    static final int MAGIC = 0x54424F4B; // "TBOK"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+    private static final int ENTRY_BYTES = 8 + 2 + 2;
+
+    private final MappedByteBuffer buffer;
+    private final int entryCount;
+    private final Random random = new Random();
+
+    private OpeningBook(MappedByteBuffer buffer, int entryCount) {
+        this.buffer = buffer;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * @return il libro mappato in memoria, oppure null se il file manca o non è valido
+     *         (in quel caso si gioca semplicemente senza libro).
+     */
+    public static OpeningBook load(Path path) {
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                System.err.println("Libro di aperture troppo corto: " + path);
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                System.err.println("Libro di aperture non riconosciuto: " + path);
+                return null;
+            }
+            if (buffer.getLong(8) != initialKey()) {
+                System.err.println("Libro di aperture generato con altre chiavi Zobrist, ignorato: " + path);
+                return null;
+            }
+            int count = buffer.getInt(16);
+            if (count < 0 || HEADER_BYTES + (long) count * ENTRY_BYTES > size) {
+                System.err.println("Libro di aperture troncato: " + path);
+                return null;
+            }
+            return new OpeningBook(buffer, count);
+        } catch (IOException e) {
+            System.err.println("Impossibile leggere il libro di aperture " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * @return una mossa del libro legale in questa posizione, oppure NO_MOVE se la posizione
+     *         non è nel libro.
+     */
+    public int probe(FastTablutState state) {
+        long key = state.getZobristKey();
+
+        // Ricerca binaria della prima entry con questa chiave
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) low = mid + 1; else high = mid;
+        }
+
+        int totalWeight = 0;
+        for (int i = low; i < entryCount && keyAt(i) == key; i++) {
+            if (state.isLegalMove(moveAt(i))) totalWeight += weightAt(i);
+        }
+        if (totalWeight == 0) return FastTablutState.NO_MOVE;
+
+        int pick = random.nextInt(totalWeight);
+        for (int i = low; i < entryCount && keyAt(i) == key; i++) {
+            if (!state.isLegalMove(moveAt(i))) continue;
+            pick -= weightAt(i);
+            if (pick < 0) return moveAt(i);
+        }
+        return FastTablutState.NO_MOVE;
+    }
+
+    private long keyAt(int index) {
+        return buffer.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+    }
+
+    private int moveAt(int index) {
+        return buffer.getShort(HEADER_BYTES + index * ENTRY_BYTES + 8) & 0xFFFF;
+    }
+
+    private int weightAt(int index) {
+        return buffer.getShort(HEADER_BYTES + index * ENTRY_BYTES + 10) & 0xFFFF;
+    }
+
+    /**
+     * Scrive un libro: le tre colonne devono avere la stessa lunghezza ed essere già ordinate per chiave.
+     */
+    static void write(Path path, long[] keys, int[] moves, int[] weights) throws IOException {
+        try (OutputStream file = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(initialKey());
+            out.writeInt(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                out.writeLong(keys[i]);
+                out.writeShort(moves[i]);
+                out.writeShort(weights[i]);
+            }
+        }
+    }
+
+    static FastTablutState initialState() {
+        StateTablut start = new StateTablut();
+        start.setTurn(Turn.WHITE);
+        return FastTablutState.fromState(start);
+    }
+
+    private static long initialKey() {
+        return initialState().getZobristKey();
+    }
+}
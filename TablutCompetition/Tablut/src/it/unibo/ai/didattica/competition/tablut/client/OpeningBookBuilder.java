@@ -0,0 +1,178 @@
+package it.unibo.ai.didattica.competition.tablut.client;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
+
+/**
+ * Generatore offline del libro di aperture (vedi OpeningBook).
+ *
+ * Visita in ampiezza le posizioni a partire da quella iniziale: in ogni posizione ogni mossa
+ * legale è valutata con una ricerca a profondità fissa del figlio, in parallelo su tutti i core
+ * (un motore per thread). Entrano nel libro le migliori "larghezza" mosse che restano entro
+ * "margine" dalla migliore, con peso decrescente con la distanza; le loro posizioni figlie
+ * formano il livello successivo. Vengono registrate le mosse di entrambi i colori.
+ *
+ * Uso: java ...OpeningBookBuilder [file=opening.book] [semimosse=4] [profondità=5] [larghezza=2] [margine=100]
+ */
+public class OpeningBookBuilder {
+
+    private static final int N_CPUS = Runtime.getRuntime().availableProcessors();
+    // TT di ciascun motore: con N_CPUS motori in parallelo la memoria resta contenuta
+    private static final int ENGINE_TT_MB = 32;
+    private static final int MAX_WEIGHT = 0xFFFF;
+
+    /**
+     * Mossa valutata: punteggio della ricerca sul figlio, dal punto di vista del Bianco.
+     */
+    private static final class ScoredMove {
+        final int move;
+        final int score;
+
+        ScoredMove(int move, int score) {
+            this.move = move; this.score = score;
+        }
+    }
+
+    private final int depth;
+    private final int width;
+    private final int margin;
+    private final ExecutorService workers = Executors.newFixedThreadPool(N_CPUS);
+    private final List<AlphaBetaEngine> engines = new ArrayList<>();
+    private final ThreadLocal<AlphaBetaEngine> workerEngine = ThreadLocal.withInitial(this::newEngine);
+
+    private final List<long[]> entries = new ArrayList<>(); // {chiave, mossa, peso}
+
+    public OpeningBookBuilder(int depth, int width, int margin) {
+        this.depth = depth;
+        this.width = width;
+        this.margin = margin;
+    }
+
+    private AlphaBetaEngine newEngine() {
+        AlphaBetaEngine engine = new AlphaBetaEngine(Turn.WHITE, HeuristicWeights.INITIAL_WEIGHTS, ENGINE_TT_MB);
+        synchronized (engines) {
+            engines.add(engine);
+        }
+        return engine;
+    }
+
+    public void build(int plies) throws InterruptedException, ExecutionException {
+        List<FastTablutState> level = new ArrayList<>();
+        level.add(OpeningBook.initialState());
+        Set<Long> visited = new HashSet<>();
+        visited.add(level.get(0).getZobristKey());
+
+        for (int ply = 0; ply < plies && !level.isEmpty(); ply++) {
+            long start = System.currentTimeMillis();
+            List<FastTablutState> nextLevel = new ArrayList<>();
+
+            for (FastTablutState position : level) {
+                for (ScoredMove chosen : bookMoves(position)) {
+                    FastTablutState child = position.clone();
+                    child.applyMove(chosen.move);
+                    Turn turn = child.getTurn();
+                    if ((turn.equals(Turn.WHITE) || turn.equals(Turn.BLACK)) && visited.add(child.getZobristKey())) {
+                        nextLevel.add(child);
+                    }
+                }
+            }
+
+            System.out.println("Semimossa " + ply + ": " + level.size() + " posizioni in "
+                    + (System.currentTimeMillis() - start) + " ms, entry totali " + entries.size());
+            level = nextLevel;
+        }
+    }
+
+    /**
+     * Valuta in parallelo tutte le mosse della posizione, registra nel libro quelle scelte e le restituisce.
+     */
+    private List<ScoredMove> bookMoves(FastTablutState position) throws InterruptedException, ExecutionException {
+        boolean maximizing = position.getTurn().equals(Turn.WHITE);
+        int[] moves = new int[FastTablutState.MAX_MOVES];
+        int count = position.generateMoves(moves, 0);
+
+        List<Future<ScoredMove>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final int move = moves[i];
+            futures.add(workers.submit(() -> {
+                FastTablutState child = position.clone();
+                child.applyMove(move);
+                Turn turn = child.getTurn();
+                if (turn.equals(Turn.WHITEWIN)) return new ScoredMove(move, Integer.MAX_VALUE);
+                if (turn.equals(Turn.BLACKWIN)) return new ScoredMove(move, Integer.MIN_VALUE);
+                return new ScoredMove(move, workerEngine.get().searchToDepth(child, depth - 1).getScore());
+            }));
+        }
+
+        ScoredMove[] scored = new ScoredMove[count];
+        for (int i = 0; i < count; i++) {
+            scored[i] = futures.get(i).get();
+        }
+        // Migliore per chi muove in testa
+        Arrays.sort(scored, (a, b) -> maximizing ? Integer.compare(b.score, a.score) : Integer.compare(a.score, b.score));
+
+        List<ScoredMove> chosen = new ArrayList<>();
+        long best = scored[0].score;
+        for (int i = 0; i < count && chosen.size() < width; i++) {
+            long distance = Math.abs(best - scored[i].score);
+            if (distance > margin) break;
+            int weight = (int) Math.max(1, Math.min(MAX_WEIGHT, margin + 1 - distance));
+            entries.add(new long[] { position.getZobristKey(), scored[i].move, weight });
+            chosen.add(scored[i]);
+        }
+        return chosen;
+    }
+
+    public void write(Path path) throws IOException {
+        entries.sort((a, b) -> Long.compare(a[0], b[0]));
+        long[] keys = new long[entries.size()];
+        int[] moves = new int[entries.size()];
+        int[] weights = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            long[] entry = entries.get(i);
+            keys[i] = entry[0];
+            moves[i] = (int) entry[1];
+            weights[i] = (int) entry[2];
+        }
+        OpeningBook.write(path, keys, moves, weights);
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+        synchronized (engines) {
+            for (AlphaBetaEngine engine : engines) engine.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path path = Paths.get(args.length > 0 ? args[0] : OpeningBook.DEFAULT_FILE);
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        int margin = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+
+        System.out.println("Libro di aperture: " + plies + " semimosse, D=" + depth + ", larghezza " + width
+                + ", margine " + margin + ", " + N_CPUS + " thread");
+        OpeningBookBuilder builder = new OpeningBookBuilder(depth, width, margin);
+        try {
+            builder.build(plies);
+            builder.write(path);
+            System.out.println("Scritte " + builder.entries.size() + " entry in " + path.toAbsolutePath());
+        } finally {
+            builder.shutdown();
+        }
+    }
+}
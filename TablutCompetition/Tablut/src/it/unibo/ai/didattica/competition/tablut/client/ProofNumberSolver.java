@@ -0,0 +1,326 @@
+package it.unibo.ai.didattica.competition.tablut.client;
+
+import java.util.function.BooleanSupplier;
+
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
+
+/**
+ * Solutore df-pn (depth-first proof-number search) per le vittorie forzate a breve:
+ * "il Bianco porta il Re in fuga entro N mosse" oppure "il Nero cattura il Re entro N mosse",
+ * dove l'attaccante è sempre il giocatore al tratto.
+ *
+ * I nodi OR sono quelli dell'attaccante (basta una mossa vincente), i nodi AND quelli del
+ * difensore (ogni risposta deve perdere). Proof e disproof number sono salvati in una tabella
+ * a bucket indicizzata per chiave Zobrist e profondità residua; ogni nodo
+ * interno viene espanso finché i suoi numeri restano sotto le soglie ricevute dal padre.
+ * L'ultima coppia di semimosse (risposta del difensore e mossa finale dell'attaccante) è
+ * risolta direttamente con isCaptureMove, senza occupare la tabella con le foglie.
+ *
+ * Un'istanza non è thread-safe: va usata da un solo thread alla volta.
+ */
+public class ProofNumberSolver {
+
+    public enum Result { PROVEN, DISPROVEN, UNKNOWN }
+
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    private static final int MAX_PLIES = 15;
+    // Distingue le entry delle ricerche con attaccante Nero da quelle con attaccante Bianco
+    private static final long BLACK_ATTACKER_SALT = 0x9E3779B97F4A7C15L;
+    private static final int SLOTS_PER_BUCKET = 4;
+    // Nodi tra due controlli della condizione di stop
+    private static final long STOP_CHECK_MASK = 255;
+
+    // Sul tratto del Bianco: al massimo questi pezzi sulla riga e sulla colonna del Re
+    private static final int MAX_KING_LINE_BLOCKERS = 4;
+    // Sul tratto del Nero: al massimo queste caselle libere attorno al Re
+    private static final int MAX_KING_FREE_NEIGHBOURS = 2;
+
+    private static final int[] DR = {-1, 1, 0, 0};
+    private static final int[] DC = {0, 0, -1, 1};
+
+    private final long[] tableKeys;
+    private final int[] tablePn;
+    private final int[] tableDn;
+    private final byte[] tableDepth;
+    private final int tableMask;
+
+    // Per ply: mosse, chiavi dei figli e loro proof/disproof number. I numeri dei fratelli
+    // restano in questa copia locale: un'entry sfrattata dalla tabella non va persa
+    private final int[][] moves = new int[MAX_PLIES + 1][FastTablutState.MAX_MOVES];
+    private final long[][] childKeys = new long[MAX_PLIES + 1][FastTablutState.MAX_MOVES];
+    private final int[][] childPn = new int[MAX_PLIES + 1][FastTablutState.MAX_MOVES];
+    private final int[][] childDn = new int[MAX_PLIES + 1][FastTablutState.MAX_MOVES];
+
+    private Turn attacker;
+    private Turn attackerWin;
+    private long salt;
+    private long nodes;
+    private long maxNodes;
+    private BooleanSupplier stopCondition;
+    private boolean stopped;
+    private int proofMove = FastTablutState.NO_MOVE;
+
+    /**
+     * @param tableBits la tabella ha 2^tableBits entry (circa 17 byte l'una), in bucket da 4.
+     */
+    public ProofNumberSolver(int tableBits) {
+        int size = 1 << tableBits;
+        this.tableKeys = new long[size];
+        this.tablePn = new int[size];
+        this.tableDn = new int[size];
+        this.tableDepth = new byte[size];
+        this.tableMask = size - 1;
+    }
+
+    /**
+     * Filtro economico per decidere se vale la pena lanciare il solutore: Re con poche
+     * pedine sulle sue linee (tratto al Bianco) o quasi circondato (tratto al Nero).
+     */
+    public static boolean isPromising(FastTablutState state) {
+        int kr = state.kingRow, kc = state.kingCol;
+        if (kr < 0) return false;
+
+        if (state.getTurn().equals(Turn.WHITE)) {
+            // Caselle non vuote su riga e colonna del Re, lui escluso (contato su entrambe)
+            int blockers = state.getLineBlockers(kr) + state.getLineBlockers(9 + kc) - 2;
+            return blockers <= MAX_KING_LINE_BLOCKERS;
+        }
+        if (state.getTurn().equals(Turn.BLACK)) {
+            int free = 0;
+            for (int d = 0; d < 4; d++) {
+                int r = kr + DR[d], c = kc + DC[d];
+                if (r < 0 || r >= 9 || c < 0 || c >= 9) continue;
+                if (state.get(r, c) == FastTablutState.E && !FastTablutState.isCitadel(r, c)
+                        && !FastTablutState.isThrone(r, c)) {
+                    free++;
+                }
+            }
+            return free <= MAX_KING_FREE_NEIGHBOURS;
+        }
+        return false;
+    }
+
+    /**
+     * Cerca una vittoria forzata del giocatore al tratto entro attackerMoves sue mosse.
+     *
+     * @param maxNodes budget di nodi espansi, oltre il quale il risultato è UNKNOWN.
+     */
+    public Result solve(FastTablutState position, int attackerMoves, long maxNodes) {
+        return solve(position, attackerMoves, maxNodes, () -> false);
+    }
+
+    /**
+     * Come solve(position, attackerMoves, maxNodes), ma si ferma (con risultato UNKNOWN se la
+     * prova non è completa) appena stopCondition diventa vera: è consultata ogni 256 nodi.
+     */
+    public Result solve(FastTablutState position, int attackerMoves, long maxNodes, BooleanSupplier stopCondition) {
+        this.proofMove = FastTablutState.NO_MOVE;
+        Turn turn = position.getTurn();
+        if (!turn.equals(Turn.WHITE) && !turn.equals(Turn.BLACK)) return Result.UNKNOWN;
+
+        int plies = Math.min(MAX_PLIES, 2 * attackerMoves - 1);
+        if (plies < 1) return Result.UNKNOWN;
+
+        this.attacker = turn;
+        this.attackerWin = turn.equals(Turn.WHITE) ? Turn.WHITEWIN : Turn.BLACKWIN;
+        this.salt = turn.equals(Turn.WHITE) ? 0L : BLACK_ATTACKER_SALT;
+        this.nodes = 0;
+        this.maxNodes = maxNodes;
+        this.stopCondition = stopCondition;
+        this.stopped = false;
+
+        FastTablutState state = position.clone();
+        long rootKey = state.getZobristKey() ^ salt;
+        mid(state, INFINITY, INFINITY, plies, 0);
+
+        int index = lookup(rootKey, plies);
+        if (index < 0) return Result.UNKNOWN;
+        if (tablePn[index] == 0) return Result.PROVEN;
+        return tableDn[index] == 0 ? Result.DISPROVEN : Result.UNKNOWN;
+    }
+
+    /**
+     * @return la prima mossa della vittoria dimostrata dall'ultimo solve(), oppure NO_MOVE.
+     */
+    public int getProofMove() {
+        return proofMove;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(tableKeys, 0L);
+        java.util.Arrays.fill(tableDepth, (byte) 0);
+    }
+
+    private void mid(FastTablutState state, int thresholdPn, int thresholdDn, int depth, int ply) {
+        nodes++;
+        if ((nodes & STOP_CHECK_MASK) == 0 && stopCondition.getAsBoolean()) stopped = true;
+        long key = state.getZobristKey() ^ salt;
+        boolean orNode = state.getTurn().equals(attacker);
+        int[] nodeMoves = moves[ply];
+        int count = state.generateMoves(nodeMoves, 0);
+
+        // Chi non ha mosse perde
+        if (count == 0) {
+            if (orNode) store(key, depth, INFINITY, 0); else store(key, depth, 0, INFINITY);
+            return;
+        }
+
+        // Ultima mossa dell'attaccante: vince solo se una mossa chiude subito la partita
+        if (orNode && depth == 1) {
+            int winningMove = winningMove(state, nodeMoves, count);
+            if (winningMove != FastTablutState.NO_MOVE) {
+                if (ply == 0) proofMove = winningMove;
+                store(key, depth, 0, INFINITY);
+            } else {
+                store(key, depth, INFINITY, 0);
+            }
+            return;
+        }
+
+        // Ultima risposta del difensore: le foglie si risolvono subito, senza passare dalla tabella
+        if (!orNode && depth == 2) {
+            int[] leafMoves = moves[ply + 1];
+            boolean proven = true;
+            for (int i = 0; i < count && proven; i++) {
+                state.makeMove(nodeMoves[i]);
+                Turn turn = state.getTurn();
+                if (!turn.equals(attackerWin)) {
+                    proven = (turn.equals(Turn.WHITE) || turn.equals(Turn.BLACK))
+                            && winningMove(state, leafMoves, state.generateMoves(leafMoves, 0)) != FastTablutState.NO_MOVE;
+                }
+                state.unmakeMove();
+            }
+            if (proven) store(key, depth, 0, INFINITY); else store(key, depth, INFINITY, 0);
+            return;
+        }
+
+        long[] keys = childKeys[ply];
+        int[] pns = childPn[ply];
+        int[] dns = childDn[ply];
+        for (int i = 0; i < count; i++) {
+            state.makeMove(nodeMoves[i]);
+            Turn turn = state.getTurn();
+            keys[i] = state.getZobristKey() ^ salt;
+            if (turn.equals(attackerWin)) {
+                pns[i] = 0; dns[i] = INFINITY;
+            } else if (!turn.equals(Turn.WHITE) && !turn.equals(Turn.BLACK)) {
+                pns[i] = INFINITY; dns[i] = 0;
+            } else {
+                int index = lookup(keys[i], depth - 1);
+                pns[i] = index >= 0 ? tablePn[index] : 1;
+                dns[i] = index >= 0 ? tableDn[index] : 1;
+            }
+            state.unmakeMove();
+        }
+
+        while (true) {
+            long pn = orNode ? INFINITY : 0;
+            long dn = orNode ? 0 : INFINITY;
+            int best = -1;
+            int bestValue = INFINITY + 1;
+            int secondValue = INFINITY;
+            int bestPn = 0, bestDn = 0;
+
+            for (int i = 0; i < count; i++) {
+                int childPn = pns[i];
+                int childDn = dns[i];
+                int value;
+                if (orNode) {
+                    pn = Math.min(pn, childPn);
+                    dn = Math.min(INFINITY, dn + childDn);
+                    value = childPn;
+                } else {
+                    pn = Math.min(INFINITY, pn + childPn);
+                    dn = Math.min(dn, childDn);
+                    value = childDn;
+                }
+                if (value < bestValue) {
+                    secondValue = bestValue;
+                    bestValue = value;
+                    best = i;
+                    bestPn = childPn;
+                    bestDn = childDn;
+                } else if (value < secondValue) {
+                    secondValue = value;
+                }
+            }
+
+            if (pn >= thresholdPn || dn >= thresholdDn || nodes >= maxNodes || stopped) {
+                if (ply == 0 && pn == 0) proofMove = nodeMoves[best];
+                store(key, depth, (int) pn, (int) dn);
+                return;
+            }
+
+            int childThresholdPn, childThresholdDn;
+            if (orNode) {
+                childThresholdPn = Math.min(thresholdPn, secondValue + 1);
+                childThresholdDn = (int) Math.min(INFINITY, (long) thresholdDn - dn + bestDn);
+            } else {
+                childThresholdDn = Math.min(thresholdDn, secondValue + 1);
+                childThresholdPn = (int) Math.min(INFINITY, (long) thresholdPn - pn + bestPn);
+            }
+
+            state.makeMove(nodeMoves[best]);
+            mid(state, childThresholdPn, childThresholdDn, depth - 1, ply + 1);
+            state.unmakeMove();
+
+            // Il figlio ha appena salvato i suoi numeri: sono ancora in tabella
+            int index = lookup(keys[best], depth - 1);
+            if (index >= 0) {
+                pns[best] = tablePn[index];
+                dns[best] = tableDn[index];
+            }
+        }
+    }
+
+    /**
+     * @return una delle mosse date (dell'attaccante, al tratto) che vince subito, oppure NO_MOVE.
+     */
+    private int winningMove(FastTablutState state, int[] candidateMoves, int count) {
+        for (int i = 0; i < count; i++) {
+            if (!state.isCaptureMove(candidateMoves[i]) || !state.makeMove(candidateMoves[i])) continue;
+            boolean win = state.getTurn().equals(attackerWin);
+            state.unmakeMove();
+            if (win) return candidateMoves[i];
+        }
+        return FastTablutState.NO_MOVE;
+    }
+
+    private int bucketIndex(long key) {
+        return (int) (key ^ (key >>> 32)) & tableMask & ~(SLOTS_PER_BUCKET - 1);
+    }
+
+    private int lookup(long key, int depth) {
+        int base = bucketIndex(key);
+        for (int index = base; index < base + SLOTS_PER_BUCKET; index++) {
+            if (tableKeys[index] == key && tableDepth[index] == depth) return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Sostituzione: stessa entry, altrimenti la meno profonda del bucket (la più economica da
+     * ricalcolare). Con un solo slot due fratelli in collisione si cancellerebbero a vicenda
+     * il risultato e la ricerca alternerebbe all'infinito tra i due.
+     */
+    private void store(long key, int depth, int pn, int dn) {
+        int base = bucketIndex(key);
+        int index = base;
+        for (int slot = base; slot < base + SLOTS_PER_BUCKET; slot++) {
+            if (tableKeys[slot] == key && tableDepth[slot] == depth) {
+                index = slot;
+                break;
+            }
+            if (tableDepth[slot] < tableDepth[index]) index = slot;
+        }
+        tableKeys[index] = key;
+        tableDepth[index] = (byte) depth;
+        tablePn[index] = pn;
+        tableDn[index] = dn;
+    }
+}
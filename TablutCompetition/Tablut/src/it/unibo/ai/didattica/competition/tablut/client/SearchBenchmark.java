@@ -0,0 +1,235 @@
+package it.unibo.ai.didattica.competition.tablut.client;
+
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
+import it.unibo.ai.didattica.competition.tablut.domain.StateTablut;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Benchmark a profondità fissa del motore alpha-beta su un insieme fisso di posizioni.
+ * Le posizioni sono ottenute con partite casuali a seme fisso, quindi sono le stesse a
+ * ogni esecuzione: si confrontano nodi visitati e tempo tra le varianti della ricerca.
+ * Le varianti esatte (PVS, finestra di aspirazione) devono restituire il valore minimax di
+ * alpha-beta: con l'aspirazione può differire solo quando la TT restituisce bound diversi,
+ * quindi i loro punteggi diversi vanno letti come possibili errori. Riduzioni (LMR), mossa
+ * nulla e potature di frontiera invece cambiano l'albero e quindi, legittimamente, anche i
+ * punteggi: per queste varianti le differenze sono riportate a parte, solo come misura.
+ * Per ogni variante viene riportata anche la memoria allocata dal thread della ricerca per nodo:
+ * a regime la ricerca non dovrebbe allocare nulla.
+ *
+ * Uso: java ...SearchBenchmark [profondità=4] [posizioni=12]
+ */
+public class SearchBenchmark {
+
+    private static final long POSITIONS_SEED = 2025L;
+    private static final int PLIES_BETWEEN_POSITIONS = 3;
+
+    /**
+     * Posizioni non terminali raccolte ogni PLIES_BETWEEN_POSITIONS semimosse di partite
+     * casuali; quando una partita finisce se ne inizia un'altra.
+     */
+    public static List<FastTablutState> buildPositions(int count) {
+        Random random = new Random(POSITIONS_SEED);
+        List<FastTablutState> positions = new ArrayList<>();
+        int[] moves = new int[FastTablutState.MAX_MOVES];
+
+        FastTablutState state = initialState();
+        int ply = 0;
+        while (positions.size() < count) {
+            int moveCount = state.generateMoves(moves, 0);
+            if (moveCount == 0 || ply >= 60) {
+                state = initialState();
+                ply = 0;
+                continue;
+            }
+            state.applyMove(moves[random.nextInt(moveCount)]);
+            ply++;
+
+            Turn turn = state.getTurn();
+            if (!turn.equals(Turn.WHITE) && !turn.equals(Turn.BLACK)) {
+                state = initialState();
+                ply = 0;
+            } else if (ply % PLIES_BETWEEN_POSITIONS == 0) {
+                positions.add(state.clone());
+            }
+        }
+        return positions;
+    }
+
+    private static FastTablutState initialState() {
+        StateTablut start = new StateTablut();
+        start.setTurn(Turn.WHITE);
+        return FastTablutState.fromState(start);
+    }
+
+    /**
+     * Variante della ricerca da confrontare: nome, impostazioni applicate al motore e se deve
+     * restituire lo stesso valore minimax di alpha-beta (exact) o può cambiarlo potando.
+     */
+    private static final class Variant {
+        final String name;
+        final boolean exact;
+        final Consumer<AlphaBetaEngine> setup;
+
+        Variant(String name, boolean exact, Consumer<AlphaBetaEngine> setup) {
+            this.name = name; this.exact = exact; this.setup = setup;
+        }
+    }
+
+    private static List<Variant> variants() {
+        List<Variant> variants = new ArrayList<>();
+        variants.add(new Variant("alpha-beta", true, engine -> {
+            engine.setPrincipalVariationSearch(false);
+            engine.setAspirationWindow(0, 0);
+            engine.setLateMoveReductions(3, 4, 0);
+            engine.setNullMovePruning(3, 0);
+            engine.setFrontierPruning(0, 0);
+        }));
+        variants.add(new Variant("PVS", true, engine -> {
+            engine.setPrincipalVariationSearch(true);
+            engine.setAspirationWindow(0, 0);
+            engine.setLateMoveReductions(3, 4, 0);
+            engine.setNullMovePruning(3, 0);
+            engine.setFrontierPruning(0, 0);
+        }));
+        variants.add(new Variant("PVS+aspir.", true, engine -> {
+            engine.setPrincipalVariationSearch(true);
+            engine.setAspirationWindow(150, 4);
+            engine.setLateMoveReductions(3, 4, 0);
+            engine.setNullMovePruning(3, 0);
+            engine.setFrontierPruning(0, 0);
+        }));
+        variants.add(new Variant("PVS+LMR", false, engine -> {
+            engine.setPrincipalVariationSearch(true);
+            engine.setAspirationWindow(150, 4);
+            engine.setLateMoveReductions(3, 4, 1);
+            engine.setNullMovePruning(3, 0);
+            engine.setFrontierPruning(0, 0);
+        }));
+        variants.add(new Variant("+null move", false, engine -> {
+            engine.setPrincipalVariationSearch(true);
+            engine.setAspirationWindow(150, 4);
+            engine.setLateMoveReductions(3, 4, 1);
+            engine.setNullMovePruning(3, 2);
+            engine.setFrontierPruning(0, 0);
+        }));
+        variants.add(new Variant("+futility", false, engine -> {
+            engine.setPrincipalVariationSearch(true);
+            engine.setAspirationWindow(150, 4);
+            engine.setLateMoveReductions(3, 4, 1);
+            engine.setNullMovePruning(3, 2);
+            engine.setFrontierPruning(3, 5);
+        }));
+        return variants;
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+
+        List<FastTablutState> positions = buildPositions(count);
+        List<Variant> variants = variants();
+        AlphaBetaEngine engine = new AlphaBetaEngine(Turn.WHITE, HeuristicWeights.INITIAL_WEIGHTS);
+
+        System.out.println("Benchmark D=" + depth + " su " + positions.size() + " posizioni");
+        StringBuilder header = new StringBuilder(String.format("%-4s", "#"));
+        for (Variant variant : variants) {
+            header.append(String.format(" %14s %7s", variant.name, "ms"));
+        }
+        System.out.println(header);
+
+        long[] totalNodes = new long[variants.size()];
+        long[] totalMs = new long[variants.size()];
+        long[] totalReduced = new long[variants.size()];
+        long[] totalResearches = new long[variants.size()];
+        long[] totalNullCutoffs = new long[variants.size()];
+        long[] totalFrontier = new long[variants.size()];
+        long[] totalAllocated = new long[variants.size()];
+        int[] mismatches = new int[variants.size()];
+
+        for (int i = 0; i < positions.size(); i++) {
+            StringBuilder line = new StringBuilder(String.format("%-4d", i));
+            long referenceScore = 0;
+            for (int v = 0; v < variants.size(); v++) {
+                long[] stats = run(engine, variants.get(v), positions.get(i), depth);
+                totalNodes[v] += stats[0];
+                totalMs[v] += stats[1];
+                totalReduced[v] += stats[3];
+                totalResearches[v] += stats[4];
+                totalNullCutoffs[v] += stats[5];
+                totalFrontier[v] += stats[6];
+                totalAllocated[v] += stats[7];
+                // Confronto con il valore minimax di alpha-beta: per le varianti esatte deve coincidere
+                if (v == 0) referenceScore = stats[2];
+                else if (stats[2] != referenceScore) mismatches[v]++;
+                line.append(String.format(" %14d %7d", stats[0], stats[1]));
+            }
+            System.out.println(line);
+        }
+
+        StringBuilder total = new StringBuilder(String.format("%-4s", "TOT"));
+        for (int v = 0; v < variants.size(); v++) {
+            total.append(String.format(" %14d %7d", totalNodes[v], totalMs[v]));
+        }
+        System.out.println(total);
+        if (totalAllocated[0] >= 0) {
+            for (int v = 0; v < variants.size(); v++) {
+                System.out.printf("%s: %.2f byte allocati per nodo%n", variants.get(v).name,
+                        totalNodes[v] > 0 ? (double) totalAllocated[v] / totalNodes[v] : 0.0);
+            }
+        }
+        int exactMismatches = 0;
+        for (int v = 1; v < variants.size(); v++) {
+            Variant variant = variants.get(v);
+            if (variant.exact) exactMismatches += mismatches[v];
+            System.out.printf("%s: nodi %.3f rispetto a %s, %s: %d, ridotte: %d (ricercate %d),"
+                            + " tagli da mossa nulla: %d, futility/razoring: %d%n",
+                    variant.name, totalNodes[0] > 0 ? (double) totalNodes[v] / totalNodes[0] : 0.0,
+                    variants.get(0).name, variant.exact ? "punteggi diversi" : "punteggi cambiati dalle potature",
+                    mismatches[v], totalReduced[v], totalResearches[v], totalNullCutoffs[v], totalFrontier[v]);
+        }
+        System.out.println("Varianti esatte: " + exactMismatches + " punteggi diversi da " + variants.get(0).name
+                + (exactMismatches == 0 ? "" : " (da verificare)"));
+
+        engine.shutdown();
+    }
+
+    /**
+     * @return {nodi, millisecondi, punteggio, mosse ridotte, ricerche ripetute, tagli da mossa nulla,
+     *         potature di futility e razoring, byte allocati (-1 se non misurabili)} della ricerca
+     *         a TT e storia vuote.
+     */
+    private static long[] run(AlphaBetaEngine engine, Variant variant, FastTablutState position, int depth) {
+        variant.setup.accept(engine);
+        engine.clearTranspositionTable();
+        engine.clearSearchHistory();
+        engine.resetSearchStats();
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.currentTimeMillis();
+        AlphaBetaEngine.AlphaBetaResult result = engine.searchToDepth(position, depth);
+        long elapsed = System.currentTimeMillis() - start;
+        long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+
+        return new long[] { engine.getSearchedNodes(), elapsed, result.getScore(),
+                engine.getReducedSearches(), engine.getReductionResearches(), engine.getNullMoveCutoffs(),
+                engine.getFutilityPrunes() + engine.getRazorCutoffs(), allocated };
+    }
+
+    /**
+     * Byte allocati finora dal thread corrente (searchToDepth cerca sul thread chiamante),
+     * oppure -1 se la JVM non espone il contatore.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled()) return -1;
+        return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
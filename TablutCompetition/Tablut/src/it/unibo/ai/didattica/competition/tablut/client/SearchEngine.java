@@ -0,0 +1,28 @@
+package it.unibo.ai.didattica.competition.tablut.client;
+
+import it.unibo.ai.didattica.competition.tablut.domain.Action;
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+
+/**
+ * Motore di ricerca usato da MyTablutAgent: AlphaBetaEngine oppure MctsEngine.
+ */
+public interface SearchEngine {
+
+    /**
+     * @return la mossa da giocare entro il limite hard di timeManager, oppure null se non ci
+     *         sono mosse legali.
+     */
+    Action getBestMove(FastTablutState currentState, TimeManager timeManager);
+
+    /**
+     * Cerca sul tempo dell'avversario finché non viene chiamato stopPondering() o getBestMove().
+     */
+    void startPondering(FastTablutState opponentToMove);
+
+    void stopPondering();
+
+    /**
+     * Ferma i thread del motore: da chiamare quando non serve più.
+     */
+    void shutdown();
+}
@@ -0,0 +1,125 @@
+package it.unibo.ai.didattica.competition.tablut.client;
+
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+
+/**
+ * Gestione del tempo di una singola decisione, con due limiti:
+ * - hard: scadenza assoluta, oltre la quale la ricerca viene fermata dal timer del motore;
+ * - soft: consultato solo tra un'iterazione e l'altra dell'iterative deepening.
+ *
+ * Il limite soft parte da una frazione del budget e viene ricalcolato a ogni profondità
+ * completata: si accorcia se la mossa migliore resta la stessa per più iterazioni, si
+ * allunga se la mossa migliore cambia o se il punteggio di chi muove cala.
+ * Non si inizia un'iterazione che, stimata dalla durata della precedente, sforerebbe il limite hard.
+ *
+ * Un'istanza vale per una sola mossa e va usata da un solo thread.
+ */
+public class TimeManager {
+
+    // Frazione del budget concessa a una mossa "normale"
+    private static final double SOFT_SHARE = 0.4;
+    // Iterazioni consecutive con la stessa mossa migliore per considerarla stabile
+    private static final int STABLE_ITERATIONS = 4;
+    private static final double STABLE_FACTOR = 0.5;
+    private static final double BEST_MOVE_CHANGE_FACTOR = 1.6;
+    private static final double SCORE_DROP_FACTOR = 2.0;
+    // Calo di punteggio (circa due pedine con i pesi iniziali) che segnala una posizione critica
+    private static final int SCORE_DROP_MARGIN = 150;
+    // Sotto questa profondità non ci si ferma mai prima del limite hard
+    private static final int MIN_DEPTH = 4;
+    // Stima prudente del rapporto tra la durata di un'iterazione e quella della precedente
+    private static final int NEXT_ITERATION_FACTOR = 2;
+
+    private final long budgetMillis;
+    private final boolean adaptive;
+
+    private long startTime;
+    private boolean maximizing;
+    private long softMillis;
+    private long lastIterationEnd;
+    private long lastIterationMillis;
+    private int lastBestMove;
+    private int lastScore;
+    private int stableIterations;
+
+    private TimeManager(long budgetMillis, boolean adaptive) {
+        this.budgetMillis = Math.max(0L, budgetMillis);
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * Tutto il budget a ogni mossa: la ricerca si ferma solo alla scadenza (comportamento storico).
+     */
+    public static TimeManager fixed(long budgetMillis) {
+        return new TimeManager(budgetMillis, false);
+    }
+
+    /**
+     * Limiti soft/hard adattivi sul budget dato (già al netto dei margini di rete).
+     */
+    public static TimeManager adaptive(long budgetMillis) {
+        return new TimeManager(budgetMillis, true);
+    }
+
+    /**
+     * Da chiamare all'inizio della decisione.
+     *
+     * @param maximizing true se muove il Bianco: i punteggi sono sempre dal suo punto di vista.
+     */
+    public void start(boolean maximizing) {
+        this.startTime = System.currentTimeMillis();
+        this.maximizing = maximizing;
+        this.softMillis = adaptive ? (long) (budgetMillis * SOFT_SHARE) : budgetMillis;
+        this.lastIterationEnd = startTime;
+        this.lastIterationMillis = 0L;
+        this.lastBestMove = FastTablutState.NO_MOVE;
+        this.lastScore = 0;
+        this.stableIterations = 0;
+    }
+
+    public long getHardDeadline() {
+        return startTime + budgetMillis;
+    }
+
+    public long getElapsedMillis() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Da chiamare quando una profondità è stata completata.
+     *
+     * @return false se conviene fermarsi e giocare la mossa migliore trovata.
+     */
+    public boolean shouldContinue(int depth, int bestMove, int score) {
+        long now = System.currentTimeMillis();
+        lastIterationMillis = now - lastIterationEnd;
+        lastIterationEnd = now;
+        long elapsed = now - startTime;
+
+        if (adaptive) {
+            double scale = 1.0;
+            // La prima iterazione non ha nulla con cui confrontarsi: né stabile né cambiata
+            if (lastBestMove != FastTablutState.NO_MOVE) {
+                if (bestMove != lastBestMove) {
+                    stableIterations = 0;
+                    scale *= BEST_MOVE_CHANGE_FACTOR;
+                } else {
+                    stableIterations++;
+                    if (stableIterations >= STABLE_ITERATIONS) scale *= STABLE_FACTOR;
+                }
+            }
+            int drop = maximizing ? lastScore - score : score - lastScore;
+            if (lastBestMove != FastTablutState.NO_MOVE && drop > SCORE_DROP_MARGIN) {
+                scale *= SCORE_DROP_FACTOR;
+            }
+            softMillis = Math.min(budgetMillis, (long) (budgetMillis * SOFT_SHARE * scale));
+        }
+        lastBestMove = bestMove;
+        lastScore = score;
+
+        if (!adaptive || depth < MIN_DEPTH) return elapsed < budgetMillis;
+        if (elapsed >= softMillis) return false;
+        // Un'iterazione interrotta dal limite hard sarebbe tempo sprecato
+        return elapsed + lastIterationMillis * NEXT_ITERATION_FACTOR < budgetMillis;
+    }
+}
@@ -0,0 +1,109 @@
+package it.unibo.ai.didattica.competition.tablut.client;
+
+import java.util.Arrays;
+
+/**
+ * Transposition Table a dimensione fissa, condivisa senza lock da tutti i thread di ricerca.
+ * Ogni entry occupa due long consecutivi: (chiave XOR dati, dati).
+ * Una lettura è valida solo se chiave XOR dati restituisce la chiave cercata, quindi
+ * una scrittura concorrente "strappata" viene scartata come un semplice miss.
+ *
+ * La tabella sopravvive tra una mossa e l'altra: newSearch() incrementa l'età e ogni bucket
+ * ha due slot, uno che preferisce le entry profonde della ricerca corrente e uno sempre rimpiazzabile.
+ *
+ * Formato dei dati (64 bit):
+ * [0..15] mossa, [16..35] punteggio (+2^19), [36..43] profondità, [44..45] tipo di nodo,
+ * [46..53] età, [63] entry valida.
+ */
+public class TranspositionTable {
+
+    public static final int EXACT_SCORE = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    public static final int DEFAULT_SIZE_MB = 64;
+
+    private static final int SCORE_OFFSET = 1 << 19;
+    private static final long VALID_BIT = 1L << 63;
+
+    private static final int SLOTS_PER_BUCKET = 2;
+
+    private final long[] table;
+    private final int indexMask; // sui bucket
+
+    private int age = 0;
+
+    /**
+     * @param sizeMb memoria occupata dalla tabella; il numero di entry è arrotondato
+     *               per difetto alla potenza di due più vicina.
+     */
+    public TranspositionTable(int sizeMb) {
+        long buckets = Math.max(1L, (long) sizeMb * 1024 * 1024 / (16 * SLOTS_PER_BUCKET));
+        int bucketCount = Integer.highestOneBit((int) Math.min(buckets, 1 << 27));
+        this.table = new long[bucketCount * SLOTS_PER_BUCKET * 2];
+        this.indexMask = bucketCount - 1;
+    }
+
+    /**
+     * Da chiamare all'inizio di ogni decisione: le entry delle ricerche precedenti restano
+     * leggibili ma diventano le prime candidate alla sostituzione.
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * @return i dati impacchettati dell'entry per questa chiave, oppure 0 se assente.
+     */
+    public long probe(long key) {
+        int index = bucketIndex(key);
+        for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++, index += 2) {
+            long data = table[index + 1];
+            if ((table[index] ^ data) == key) return data;
+        }
+        return 0L;
+    }
+
+    /**
+     * Politica di sostituzione: stessa chiave -> sovrascrive; altrimenti lo slot 0 accetta
+     * la nuova entry se è vuoto, di una ricerca precedente o non più profondo; in caso
+     * contrario la entry finisce nello slot 1, sempre rimpiazzabile.
+     */
+    public void store(long key, int score, int depth, int nodeType, int bestMove) {
+        int base = bucketIndex(key);
+        int index = base + 2;
+
+        long deepData = table[base + 1];
+        if ((table[base] ^ deepData) == key
+                || (deepData & VALID_BIT) == 0
+                || ageOf(deepData) != age
+                || depth >= depthOf(deepData)) {
+            index = base;
+        }
+
+        long data = VALID_BIT
+                | (bestMove & 0xFFFFL)
+                | ((long) ((score + SCORE_OFFSET) & 0xFFFFF) << 16)
+                | ((long) (depth & 0xFF) << 36)
+                | ((long) (nodeType & 0x3) << 44)
+                | ((long) (age & 0xFF) << 46);
+        table[index] = key ^ data;
+        table[index + 1] = data;
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key ^ (key >>> 32)) & indexMask) * SLOTS_PER_BUCKET * 2;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+    }
+
+    // --- Decodifica dei dati restituiti da probe() ---
+
+    public static int moveOf(long data) { return (int) (data & 0xFFFF); }
+    public static int scoreOf(long data) { return (int) ((data >>> 16) & 0xFFFFF) - SCORE_OFFSET; }
+    public static int depthOf(long data) { return (int) ((data >>> 36) & 0xFF); }
+    public static int nodeTypeOf(long data) { return (int) ((data >>> 44) & 0x3); }
+    public static int ageOf(long data) { return (int) ((data >>> 46) & 0xFF); }
+}
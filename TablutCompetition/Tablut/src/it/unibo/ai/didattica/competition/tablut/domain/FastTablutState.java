@@ -1,7 +1,6 @@
 package it.unibo.ai.didattica.competition.tablut.domain;
 
 import java.io.Serializable;
-import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -15,39 +14,76 @@ import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
  * Stato del gioco ottimizzato per le performance.
  * Implementa la logica completa di movimento e cattura delle regole Ashton Tablut.
  * Zobrist Hashing per Transposition Table.
+ * Bitboard a 128 bit (coppie di long) per generazione mosse, percorsi e catture.
  */
 public class FastTablutState extends State implements Serializable {
 
     private static final long serialVersionUID = 1L;
     private static final int BOARD_SIZE = 9;
+    private static final int SQUARES = BOARD_SIZE * BOARD_SIZE;
 
     // Mappatura interna dei pedoni su tipi primitivi (byte)
     public static final byte E = 0, W = 1, B = 2, K = 3, T = 4;
 
     public byte[] fastBoard;
 
+    // --- CODIFICA INTERA DELLE MOSSE ---
+    // Una mossa è from | to << 7 (caselle 0..80, stanno in uno short). 0 = nessuna mossa.
+    public static final int NO_MOVE = 0;
+    // Limite superiore delle mosse in una posizione (16 pezzi neri x 16 destinazioni)
+    public static final int MAX_MOVES = 256;
+
     // Metadati per accesso immediato
     public int kingRow = -1;
     public int kingCol = -1;
     public int whitePawnsCount = 0;
     public int blackPawnsCount = 0;
 
+    // Bitboard dei pezzi: casella i = r * 9 + c, bit 0..63 in *Lo, bit 64..80 in *Hi.
+    // Sono sempre allineate a fastBoard (aggiornate solo tramite set()).
+    private long whiteLo, whiteHi;
+    private long blackLo, blackHi;
+    private long kingLo, kingHi;
+
+    // Occupazione a 9 bit di ogni linea: [0..8] righe (bit = colonna), [9..17] colonne (bit = riga)
+    private int[] lineOccupancy = new int[2 * BOARD_SIZE];
+    // Caselle non vuote di ogni linea (pezzi e trono vuoto): ostacoli alla corsa del Re verso il bordo
+    private int[] lineBlockers = new int[2 * BOARD_SIZE];
+
+    // --- TERMINI DELLA VALUTAZIONE SULLE LINEE DEL RE ---
+    // Per ciascuna delle 4 direzioni dal Re, il primo pezzo o via di fuga libera incontrato e le
+    // caselle speciali vuote attraversate prima (stessa semantica della scansione di evalKingPos).
+    // Un campo da 4 bit per termine; il campo 0 è la maschera delle direzioni aperte verso una fuga.
+    public static final int KING_OPEN_LINES = 0, KING_EMPTY_CITADELS = 1, KING_EMPTY_THRONE = 2,
+            KING_FAR_WHITE = 3, KING_NEAR_WHITE = 4, KING_FAR_BLACK = 5, KING_NEAR_BLACK = 6;
+    public static final int KING_LINE_TERMS = 7;
+    // Ricalcolati solo quando una mossa tocca la riga o la colonna del Re, ripristinati da unmakeMove()
+    private int kingLineTerms;
+
     private long zobristKey;
 
-    // Tabella [riga][colonna][tipo_pedone]
+    // --- STACK DI UNDO (makeMove/unmakeMove) ---
+    // Un record per mossa: chiave precedente + due int impacchettati. Allocato al primo makeMove.
+    private static final int MAX_UNDO_DEPTH = 128;
+    private static final int NO_SQUARE = 127;
+    private static final Turn[] TURNS = Turn.values();
+    private long[] undoKeys;
+    private int[] undoMoves;    // from | to << 7 | re precedente << 14 | turno precedente << 21
+    private int[] undoCaptures; // fino a 4 caselle catturate (7 bit ciascuna) | conteggio << 28
+    private int[] undoKingTerms; // kingLineTerms prima della mossa
+    private int undoTop = 0;
+    private int lastCaptures;   // catture dell'ultima mossa giocata, nello stesso formato
+
+    // Tabella [casella * 5 + tipo_pedone]
     // tipo_pedone: 0=E, 1=W, 2=B, 3=K, 4=T
-    private static final long[][][] zobristTable = new long[BOARD_SIZE][BOARD_SIZE][5];
+    private static final long[] zobristTable = new long[SQUARES * 5];
     private static final long zobristTurnBlack;
     private static final Random rand = new Random(42); // Usa un seed fisso per la riproducibilità
 
     static {
         // Inizializza la tabella con valori casuali
-        for (int r = 0; r < BOARD_SIZE; r++) {
-            for (int c = 0; c < BOARD_SIZE; c++) {
-                for (int p = 0; p < 5; p++) {
-                    zobristTable[r][c][p] = rand.nextLong();
-                }
-            }
+        for (int i = 0; i < SQUARES * 5; i++) {
+            zobristTable[i] = rand.nextLong();
         }
         zobristTurnBlack = rand.nextLong();
     }
@@ -75,6 +111,152 @@ public class FastTablutState extends State implements Serializable {
             new int[]{1,8}, new int[]{2,8}, new int[]{6,8}, new int[]{7,8}
     ));
     public static final int[] THRONE = {4, 4};
+    private static final int THRONE_SQ = THRONE[0] * BOARD_SIZE + THRONE[1];
+
+    // Proprietà statiche per casella (indice r * 9 + c), condivise da stato e valutazione
+    public static final byte SQ_CITADEL = 1, SQ_ESCAPE = 2, SQ_THRONE = 4;
+    public static final byte[] SQUARE_FLAGS = new byte[SQUARES];
+    static {
+        for (int[] coord : CITADELS) SQUARE_FLAGS[coord[0] * BOARD_SIZE + coord[1]] |= SQ_CITADEL;
+        for (int[] coord : ESCAPES) SQUARE_FLAGS[coord[0] * BOARD_SIZE + coord[1]] |= SQ_ESCAPE;
+        SQUARE_FLAGS[THRONE_SQ] |= SQ_THRONE;
+    }
+
+    public static boolean isCitadel(int r, int c) { return (SQUARE_FLAGS[r * BOARD_SIZE + c] & SQ_CITADEL) != 0; }
+    public static boolean isEscape(int r, int c) { return (SQUARE_FLAGS[r * BOARD_SIZE + c] & SQ_ESCAPE) != 0; }
+    public static boolean isThrone(int r, int c) { return (SQUARE_FLAGS[r * BOARD_SIZE + c] & SQ_THRONE) != 0; }
+
+    // ----------------------------------------------------------------------
+    // MASCHERE STATICHE (calcolate una sola volta)
+    // ----------------------------------------------------------------------
+
+    private static final long CITADELS_LO, CITADELS_HI;
+    private static final long ESCAPES_LO, ESCAPES_HI;
+    private static final long THRONE_LO, THRONE_HI;
+
+    // Direzioni: 0 = est (+c), 1 = ovest (-c), 2 = sud (+r), 3 = nord (-r)
+    private static final int[] DIR_DR = {0, 0, 1, -1};
+    private static final int[] DIR_DC = {1, -1, 0, 0};
+
+    // Destinazioni lungo una linea: indice [posizione * 512 + ostacoli a 9 bit] -> maschera a 9 bit
+    // delle caselle raggiungibili in entrambi i versi prima del primo ostacolo.
+    // Trono e cittadelle sono ostacoli fissi, fusi nell'occupazione tramite LINE_OBSTACLES.
+    private static final short[] SLIDE_TARGETS = new short[BOARD_SIZE * 512];
+    private static final int[] LINE_OBSTACLES = new int[2 * BOARD_SIZE];
+    // Vie di fuga di ogni linea, stesso formato di lineOccupancy
+    private static final int[] LINE_ESCAPES = new int[2 * BOARD_SIZE];
+    // Cittadelle e trono di ogni linea, stesso formato (per i termini delle linee del Re)
+    private static final int[] LINE_CITADELS = new int[2 * BOARD_SIZE];
+    private static final int[] LINE_THRONE = new int[2 * BOARD_SIZE];
+    // Distanza di Manhattan dalla via di fuga più vicina, per casella
+    private static final int[] ESCAPE_DISTANCE = new int[SQUARES];
+    // Caselle strettamente comprese tra due caselle allineate, indice [from * 81 + to]
+    private static final long[] BETWEEN_LO = new long[SQUARES * SQUARES];
+    private static final long[] BETWEEN_HI = new long[SQUARES * SQUARES];
+    // Casella adiacente nella direzione data (-1 se fuori dal tabellone), indice [dir * 81 + sq]
+    private static final int[] NEIGHBOR = new int[4 * SQUARES];
+    // Caselle ortogonalmente adiacenti
+    private static final long[] ADJACENT_LO = new long[SQUARES];
+    private static final long[] ADJACENT_HI = new long[SQUARES];
+
+    static {
+        CITADELS_LO = flagMask(SQ_CITADEL, 0); CITADELS_HI = flagMask(SQ_CITADEL, 64);
+        ESCAPES_LO = flagMask(SQ_ESCAPE, 0); ESCAPES_HI = flagMask(SQ_ESCAPE, 64);
+        THRONE_LO = flagMask(SQ_THRONE, 0); THRONE_HI = flagMask(SQ_THRONE, 64);
+
+        for (int sq = 0; sq < SQUARES; sq++) {
+            int r = sq / BOARD_SIZE, c = sq % BOARD_SIZE;
+            for (int dir = 0; dir < 4; dir++) {
+                int nr = r + DIR_DR[dir], nc = c + DIR_DC[dir];
+                boolean inside = nr >= 0 && nr < BOARD_SIZE && nc >= 0 && nc < BOARD_SIZE;
+                NEIGHBOR[dir * SQUARES + sq] = inside ? nr * BOARD_SIZE + nc : -1;
+                if (inside) {
+                    int n = nr * BOARD_SIZE + nc;
+                    if (n < 64) ADJACENT_LO[sq] |= 1L << n; else ADJACENT_HI[sq] |= 1L << (n - 64);
+                }
+
+                long rayLo = 0, rayHi = 0;
+                for (int tr = nr, tc = nc; tr >= 0 && tr < BOARD_SIZE && tc >= 0 && tc < BOARD_SIZE;
+                     tr += DIR_DR[dir], tc += DIR_DC[dir]) {
+                    int to = tr * BOARD_SIZE + tc;
+                    // Il segmento (sq, to) è il raggio accumulato finora
+                    BETWEEN_LO[sq * SQUARES + to] = rayLo;
+                    BETWEEN_HI[sq * SQUARES + to] = rayHi;
+                    if (to < 64) rayLo |= 1L << to; else rayHi |= 1L << (to - 64);
+                }
+            }
+
+            if ((SQUARE_FLAGS[sq] & (SQ_CITADEL | SQ_THRONE)) != 0) {
+                LINE_OBSTACLES[r] |= 1 << c;
+                LINE_OBSTACLES[BOARD_SIZE + c] |= 1 << r;
+            }
+            if ((SQUARE_FLAGS[sq] & SQ_ESCAPE) != 0) {
+                LINE_ESCAPES[r] |= 1 << c;
+                LINE_ESCAPES[BOARD_SIZE + c] |= 1 << r;
+            }
+            if ((SQUARE_FLAGS[sq] & SQ_CITADEL) != 0) {
+                LINE_CITADELS[r] |= 1 << c;
+                LINE_CITADELS[BOARD_SIZE + c] |= 1 << r;
+            }
+            if ((SQUARE_FLAGS[sq] & SQ_THRONE) != 0) {
+                LINE_THRONE[r] |= 1 << c;
+                LINE_THRONE[BOARD_SIZE + c] |= 1 << r;
+            }
+
+            int distance = Integer.MAX_VALUE;
+            for (int[] escape : ESCAPES) {
+                distance = Math.min(distance, Math.abs(r - escape[0]) + Math.abs(c - escape[1]));
+            }
+            ESCAPE_DISTANCE[sq] = distance;
+        }
+
+        for (int pos = 0; pos < BOARD_SIZE; pos++) {
+            for (int occ = 0; occ < 512; occ++) {
+                int targets = 0;
+                for (int i = pos + 1; i < BOARD_SIZE && (occ & (1 << i)) == 0; i++) targets |= 1 << i;
+                for (int i = pos - 1; i >= 0 && (occ & (1 << i)) == 0; i--) targets |= 1 << i;
+                SLIDE_TARGETS[pos * 512 + occ] = (short) targets;
+            }
+        }
+    }
+
+    // Bitmask (metà bassa o alta) delle caselle con la proprietà data
+    private static long flagMask(byte flag, int base) {
+        long mask = 0;
+        for (int sq = base; sq < Math.min(base + 64, SQUARES); sq++) {
+            if ((SQUARE_FLAGS[sq] & flag) != 0) mask |= 1L << (sq - base);
+        }
+        return mask;
+    }
+
+    public static int encodeMove(int from, int to) { return from | (to << 7); }
+    public static int moveFrom(int move) { return move & 0x7F; }
+    public static int moveTo(int move) { return (move >>> 7) & 0x7F; }
+
+    public static int encodeAction(Action a) {
+        int rFrom = a.getRowFrom(), cFrom = a.getColumnFrom();
+        int rTo = a.getRowTo(), cTo = a.getColumnTo();
+        if (rFrom < 0 || rFrom >= BOARD_SIZE || cFrom < 0 || cFrom >= BOARD_SIZE
+                || rTo < 0 || rTo >= BOARD_SIZE || cTo < 0 || cTo >= BOARD_SIZE) return NO_MOVE;
+        return encodeMove(rFrom * BOARD_SIZE + cFrom, rTo * BOARD_SIZE + cTo);
+    }
+
+    /**
+     * Converte una mossa codificata in Action (da usare solo alla radice, verso il server).
+     */
+    public Action toAction(int move) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        try {
+            return new Action(getBox(from / BOARD_SIZE, from % BOARD_SIZE), getBox(to / BOARD_SIZE, to % BOARD_SIZE), this.getTurn());
+        } catch (IOException e) {
+            return null; // Non dovrebbe mai accadere
+        }
+    }
+
+    private static boolean testBit(long lo, long hi, int sq) {
+        return sq < 64 ? ((lo >>> sq) & 1L) != 0 : ((hi >>> (sq - 64)) & 1L) != 0;
+    }
 
     // Costruttore privato
     private FastTablutState() {
@@ -86,17 +268,38 @@ public class FastTablutState extends State implements Serializable {
         if (r < 0 || r >= BOARD_SIZE || c < 0 || c >= BOARD_SIZE) return E; // Ritorna EMPTY per coordinate fuori bordi
         return fastBoard[r * BOARD_SIZE + c];
     }
-    public void set(int r, int c, byte pawnType) { fastBoard[r * BOARD_SIZE + c] = pawnType; }
+    public void set(int r, int c, byte pawnType) {
+        setSquare(r * BOARD_SIZE + c, pawnType);
+        this.kingLineTerms = computeKingLineTerms();
+    }
 
-    private boolean isCitadel(int r, int c) {
-        if (r == THRONE[0] && c == THRONE[1]) return false;
-        for (int[] coord : CITADELS) { if (coord[0] == r && coord[1] == c) return true; }
-        return false;
+    /**
+     * Unico punto di scrittura del tabellone: mantiene allineate fastBoard e le bitboard.
+     */
+    private void setSquare(int sq, byte pawnType) {
+        byte old = fastBoard[sq];
+        if (old == pawnType) return;
+        togglePiece(sq, old);
+        togglePiece(sq, pawnType);
+        fastBoard[sq] = pawnType;
+
+        int delta = (pawnType != E ? 1 : 0) - (old != E ? 1 : 0);
+        lineBlockers[sq / BOARD_SIZE] += delta;
+        lineBlockers[BOARD_SIZE + sq % BOARD_SIZE] += delta;
     }
 
-    private boolean containsCoord(List<int[]> list, int r, int c) {
-        for (int[] coord : list) { if (coord[0] == r && coord[1] == c) return true; }
-        return false;
+    private void togglePiece(int sq, byte pawnType) {
+        long lo = sq < 64 ? 1L << sq : 0L;
+        long hi = sq < 64 ? 0L : 1L << (sq - 64);
+        switch (pawnType) {
+            case W: whiteLo ^= lo; whiteHi ^= hi; break;
+            case B: blackLo ^= lo; blackHi ^= hi; break;
+            case K: kingLo ^= lo; kingHi ^= hi; break;
+            default: return; // E e T non hanno una bitboard dinamica
+        }
+        int r = sq / BOARD_SIZE, c = sq % BOARD_SIZE;
+        lineOccupancy[r] ^= 1 << c;
+        lineOccupancy[BOARD_SIZE + c] ^= 1 << r;
     }
 
     public static FastTablutState fromState(State state) {
@@ -111,7 +314,7 @@ public class FastTablutState extends State implements Serializable {
 
                 fastState.set(r, c, bytePawn);
 
-                fastState.zobristKey ^= zobristTable[r][c][bytePawn];
+                fastState.zobristKey ^= zobristTable[(r * BOARD_SIZE + c) * 5 + bytePawn];
 
                 if (pawn.equals(Pawn.WHITE)) {
                     fastState.whitePawnsCount++;
@@ -127,6 +330,7 @@ public class FastTablutState extends State implements Serializable {
         if (fastState.turn.equals(Turn.BLACK)) {
             fastState.zobristKey ^= zobristTurnBlack;
         }
+        fastState.kingLineTerms = fastState.computeKingLineTerms();
 
         return fastState;
     }
@@ -140,6 +344,12 @@ public class FastTablutState extends State implements Serializable {
         newState.kingCol = this.kingCol;
         newState.whitePawnsCount = this.whitePawnsCount;
         newState.blackPawnsCount = this.blackPawnsCount;
+        newState.whiteLo = this.whiteLo; newState.whiteHi = this.whiteHi;
+        newState.blackLo = this.blackLo; newState.blackHi = this.blackHi;
+        newState.kingLo = this.kingLo; newState.kingHi = this.kingHi;
+        newState.lineOccupancy = this.lineOccupancy.clone();
+        newState.lineBlockers = this.lineBlockers.clone();
+        newState.kingLineTerms = this.kingLineTerms;
         newState.zobristKey = this.zobristKey;
         return newState;
     }
@@ -153,97 +363,206 @@ public class FastTablutState extends State implements Serializable {
     // LOGICA DI GIOCO OTTIMIZZATA
     // ----------------------------------------------------------------------
 
-    private boolean isPathClear(int r1, int c1, int r2, int c2, byte movingPawn) {
-        int dr = Integer.signum(r2 - r1);
-        int dc = Integer.signum(c2 - c1);
+    /**
+     * Caselle che non si possono attraversare né occupare:
+     * pezzi, cittadelle e trono (vuoto o occupato dal Re).
+     */
+    private long blockersLo() { return whiteLo | blackLo | kingLo | CITADELS_LO | THRONE_LO; }
+    private long blockersHi() { return whiteHi | blackHi | kingHi | CITADELS_HI | THRONE_HI; }
+
+    /**
+     * Il percorso (esclusi gli estremi) è libero se nessuna casella intermedia è un ostacolo.
+     * Vale anche per il Re: il trono vuoto non si scavalca (ClimbingException lato server).
+     */
+    private boolean isPathClear(int from, int to) {
+        int idx = from * SQUARES + to;
+        return (BETWEEN_LO[idx] & blockersLo()) == 0 && (BETWEEN_HI[idx] & blockersHi()) == 0;
+    }
 
-        for (int r = r1 + dr, c = c1 + dc; r != r2 || c != c2; r += dr, c += dc) {
-            byte currentPawn = get(r, c);
+    /**
+     * Esegue la mossa, la validazione, la cattura e il cambio di turno.
+     * @return true se la mossa è valida e lo stato è stato modificato.
+     */
+    public boolean applyMove(Action a) {
+        return applyMove(encodeAction(a));
+    }
+
+    public boolean applyMove(int move) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        if (!isLegalMove(from, to)) return false;
 
-            if (currentPawn != E && currentPawn != T) return false;
+        playMove(from, to);
+        return true;
+    }
 
-            // REGOLA ASHTON: Solo il Re può passare sul Trono
-            if (currentPawn == T && movingPawn != K) return false;
+    /**
+     * Come applyMove, ma salva un record di undo: la mossa si annulla con unmakeMove().
+     * Pensato per la ricerca, che lavora in-place su un unico stato per thread.
+     * @return true se la mossa è valida e lo stato è stato modificato (e va annullato).
+     */
+    public boolean makeMove(Action a) {
+        return makeMove(encodeAction(a));
+    }
 
-            // REGOLA ASHTON: Nessuno può passare su una Cittadella (tranne il Re se è la sua mossa finale per fuggire)
-            // Questa logica è complessa, la gestiamo nel check di validazione mossa.
-            // Per ora, assumiamo che le cittadelle vuote blocchino (come il trono per i soldati).
-            if (isCitadel(r, c) && movingPawn != K) return false;
+    public boolean makeMove(int move) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        if (!isLegalMove(from, to)) return false;
 
-            // Fix per Re che attraversa cittadelle (non consentito)
-            if (isCitadel(r, c) && movingPawn == K) return false;
+        if (undoKeys == null) {
+            undoKeys = new long[MAX_UNDO_DEPTH];
+            undoMoves = new int[MAX_UNDO_DEPTH];
+            undoCaptures = new int[MAX_UNDO_DEPTH];
+            undoKingTerms = new int[MAX_UNDO_DEPTH];
         }
+        int prevKing = this.kingRow == -1 ? NO_SQUARE : this.kingRow * BOARD_SIZE + this.kingCol;
+        undoKeys[undoTop] = this.zobristKey;
+        undoMoves[undoTop] = from | (to << 7) | (prevKing << 14) | (this.turn.ordinal() << 21);
+        undoKingTerms[undoTop] = this.kingLineTerms;
+
+        playMove(from, to);
+
+        undoCaptures[undoTop] = lastCaptures;
+        undoTop++;
         return true;
     }
 
     /**
-     * Esegue la mossa, la validazione, la cattura e il cambio di turno.
-     * @return true se la mossa è valida e lo stato è stato modificato.
+     * Mossa nulla: passa il turno all'avversario senza muovere, aggiornando la Zobrist Key.
+     * Va annullata con unmakeNullMove(); ha senso solo a partita in corso.
      */
-    public boolean applyMove(Action a) {
-        int rFrom = a.getRowFrom();
-        int cFrom = a.getColumnFrom();
-        int rTo = a.getRowTo();
-        int cTo = a.getColumnTo();
+    public void makeNullMove() {
+        this.turn = this.turn.equals(Turn.WHITE) ? Turn.BLACK : Turn.WHITE;
+        this.zobristKey ^= zobristTurnBlack;
+    }
+
+    public void unmakeNullMove() {
+        makeNullMove();
+    }
+
+    /**
+     * Numero di pezzi catturati dall'ultima mossa eseguita con applyMove() o makeMove().
+     * Non viene ripristinato da unmakeMove(): va letto subito dopo la mossa.
+     */
+    public int getLastCaptureCount() {
+        return lastCaptures >>> 28;
+    }
 
+    /**
+     * Annulla l'ultima mossa eseguita con makeMove(), ripristinando tabellone,
+     * bitboard, contatori, posizione del Re, turno e Zobrist Key.
+     */
+    public void unmakeMove() {
+        undoTop--;
+        int info = undoMoves[undoTop];
+        int from = info & 0x7F;
+        int to = (info >>> 7) & 0x7F;
+        int prevKing = (info >>> 14) & 0x7F;
+        Turn prevTurn = TURNS[(info >>> 21) & 0x7];
+
+        byte pawn = fastBoard[to];
+        setSquare(to, E);
+        setSquare(from, pawn);
+
+        // I pezzi catturati sono dell'avversario di chi ha mosso, oppure il Re
+        int captures = undoCaptures[undoTop];
+        byte capturedSoldier = (pawn == B) ? W : B;
+        for (int i = 0, n = captures >>> 28; i < n; i++) {
+            int sq = (captures >>> (7 * i)) & 0x7F;
+            if (sq == prevKing) {
+                setSquare(sq, K);
+            } else {
+                setSquare(sq, capturedSoldier);
+                if (capturedSoldier == W) whitePawnsCount++; else blackPawnsCount++;
+            }
+        }
+
+        if (prevKing == NO_SQUARE) {
+            this.kingRow = -1;
+        } else {
+            this.kingRow = prevKing / BOARD_SIZE;
+            this.kingCol = prevKing % BOARD_SIZE;
+        }
+        this.turn = prevTurn;
+        this.zobristKey = undoKeys[undoTop];
+        this.kingLineTerms = undoKingTerms[undoTop];
+    }
+
+    /**
+     * Validazione completa di una mossa per il turno corrente.
+     * Serve anche per le mosse da Transposition Table, che possono venire da un'altra posizione.
+     */
+    private boolean isLegalMove(int from, int to) {
         // 1. Controllo di base e turno
-        if (rFrom == rTo && cFrom == cTo) return false; // Mossa nulla
-        if (rFrom != rTo && cFrom != cTo) return false; // Mossa diagonale
+        if (from >= SQUARES || to >= SQUARES) return false;
+        if (from == to) return false; // Mossa nulla
+        if (from / BOARD_SIZE != to / BOARD_SIZE && from % BOARD_SIZE != to % BOARD_SIZE) return false; // Mossa diagonale
 
-        byte pawn = get(rFrom, cFrom);
+        byte pawn = fastBoard[from];
         if (pawn == E || pawn == T) return false; // Muove casella vuota o trono
 
         if (this.turn.equals(Turn.WHITE) && (pawn != W && pawn != K)) return false; // Turno Bianco, muove Nero
         if (this.turn.equals(Turn.BLACK) && (pawn != B)) return false; // Turno Nero, muove Bianco/Re
 
-        // 2. Controllo di destinazione
-        if (get(rTo, cTo) != E) return false; // Destinazione occupata
+        // 2. Controllo di destinazione (il trono vuoto vale come occupato)
+        if (fastBoard[to] != E) return false;
 
         // 3. Controllo Cittadelle e Trono (Validazione atterraggio)
-        if (rTo == THRONE[0] && cTo == THRONE[1]) {
-            if (pawn != K) return false; // Solo il Re può andare sul trono
-        } else if (isCitadel(rTo, cTo)) {
-            // REGOLA ASHTON: Solo il Re può atterrare su una cittadella, E SOLO se è una casella di fuga
-            if (pawn != K) {
-                return false; // Pedoni (W/B) non possono MAI atterrare su una cittadella
-            } else { // Re (K):
-                if (!containsCoord(ESCAPES, rTo, cTo)) {
-                    return false; // Il Re non può atterrare su una cittadella NON-escape (es. a4)
-                }
-            }
-        }
+        // REGOLA ASHTON: nessuno atterra sul trono; le cittadelle non sono mai caselle di fuga,
+        // quindi nemmeno il Re può atterrarci.
+        if (testBit(CITADELS_LO | THRONE_LO, CITADELS_HI | THRONE_HI, to)) return false;
 
         // 4. Controllo del percorso (Climbing)
-        if (!isPathClear(rFrom, cFrom, rTo, cTo, pawn)) return false;
+        return isPathClear(from, to);
+    }
+
+    /**
+     * Esegue una mossa già validata: spostamento, catture, fine partita e cambio turno.
+     */
+    private void playMove(int from, int to) {
+        byte pawn = fastBoard[from];
+        lastCaptures = 0;
 
         // 5. Esegui la Mossa
-        byte oldPawnAtFrom = get(rFrom, cFrom);
-        byte newPawnAtFrom = (rFrom == THRONE[0] && cFrom == THRONE[1]) ? T : E;
-        set(rFrom, cFrom, newPawnAtFrom);
-        // Aggiorna Zobrist per la casella 'from'
-        this.zobristKey ^= zobristTable[rFrom][cFrom][oldPawnAtFrom];
-        this.zobristKey ^= zobristTable[rFrom][cFrom][newPawnAtFrom];
+        movePiece(from, to, pawn);
+
+        if (pawn == K && testBit(ESCAPES_LO, ESCAPES_HI, to)) {
+            this.turn = Turn.WHITEWIN;
+            this.kingLineTerms = computeKingLineTerms();
+            return;
+        }
 
-        byte oldPawnAtTo = get(rTo, cTo); // Sarà E
-        byte newPawnAtTo = pawn;
-        set(rTo, cTo, newPawnAtTo);
-        // Aggiorna Zobrist per la casella 'to'
-        this.zobristKey ^= zobristTable[rTo][cTo][oldPawnAtTo];
-        this.zobristKey ^= zobristTable[rTo][cTo][newPawnAtTo];
+        // 6. Check Catture
+        checkCaptures(to, pawn);
 
+        // 7-8. Vittoria/Sconfitta e cambio turno
+        finishTurn();
 
-        if (pawn == K) {
-            this.kingRow = rTo;
-            this.kingCol = cTo;
-            if (containsCoord(ESCAPES, rTo, cTo)) {
-                this.turn = Turn.WHITEWIN;
-                return true;
-            }
+        if (pawn == K || touchesKingLines(from) || touchesKingLines(to) || capturesTouchKingLines()) {
+            this.kingLineTerms = computeKingLineTerms();
         }
+    }
 
-        // 6. Check Catture
-        checkCaptures(rTo, cTo, pawn);
+    private void movePiece(int from, int to, byte pawn) {
+        byte newPawnAtFrom = (from == THRONE_SQ) ? T : E;
+        setSquare(from, newPawnAtFrom);
+        // Aggiorna Zobrist per la casella 'from'
+        this.zobristKey ^= zobristTable[from * 5 + pawn];
+        this.zobristKey ^= zobristTable[from * 5 + newPawnAtFrom];
+
+        setSquare(to, pawn);
+        // Aggiorna Zobrist per la casella 'to' (prima era E)
+        this.zobristKey ^= zobristTable[to * 5 + E];
+        this.zobristKey ^= zobristTable[to * 5 + pawn];
 
+        if (pawn == K) {
+            this.kingRow = to / BOARD_SIZE;
+            this.kingCol = to % BOARD_SIZE;
+        }
+    }
+
+    private void finishTurn() {
         // 7. Controlla Sconfitta/Vittoria (post-cattura)
         if (this.turn != Turn.WHITEWIN && this.kingRow == -1) {
             this.turn = Turn.BLACKWIN;
@@ -261,161 +580,330 @@ public class FastTablutState extends State implements Serializable {
 
             this.zobristKey ^= zobristTurnBlack;
         }
+    }
 
-        return true;
+    /**
+     * Rimuove il pezzo catturato aggiornando Zobrist Key, contatori e bitboard.
+     */
+    private void capturePiece(int sq) {
+        byte oldPawn = fastBoard[sq];
+        this.zobristKey ^= zobristTable[sq * 5 + oldPawn]; // Rimuovi pedone vecchio
+        this.zobristKey ^= zobristTable[sq * 5 + E];       // Aggiungi pedone vuoto
+
+        if (oldPawn == W) whitePawnsCount--;
+        if (oldPawn == B) blackPawnsCount--;
+        setSquare(sq, E);
+
+        int n = lastCaptures >>> 28;
+        lastCaptures = (lastCaptures & ~(0xF << 28)) | (sq << (7 * n)) | ((n + 1) << 28);
+    }
+
+    private void checkCaptures(int to, byte movedPawn) {
+        // Trono vuoto: solo in quel caso conta come muro per le pedine
+        long emptyThroneLo = THRONE_LO & ~kingLo;
+        long emptyThroneHi = THRONE_HI & ~kingHi;
+
+        long oppLo, oppHi, wallLo, wallHi;
+        if (movedPawn == B) {
+            oppLo = whiteLo; oppHi = whiteHi;
+            wallLo = blackLo; wallHi = blackHi;
+        } else if (movedPawn == W) {
+            oppLo = blackLo; oppHi = blackHi;
+            wallLo = whiteLo | kingLo; wallHi = whiteHi | kingHi;
+        } else { // Re: cattura solo contro trono vuoto o cittadella
+            oppLo = blackLo; oppHi = blackHi;
+            wallLo = 0; wallHi = 0;
+        }
+        // REGOLA ASHTON: Il muro può essere un alleato, il Trono (T) o una Cittadella
+        wallLo |= CITADELS_LO | emptyThroneLo;
+        wallHi |= CITADELS_HI | emptyThroneHi;
+
+        // 1. Soldati avversari adiacenti stretti contro un muro
+        if (((ADJACENT_LO[to] & oppLo) | (ADJACENT_HI[to] & oppHi)) != 0) {
+            for (int dir = 0; dir < 4; dir++) {
+                int opp = NEIGHBOR[dir * SQUARES + to];
+                if (opp < 0 || !testBit(oppLo, oppHi, opp)) continue;
+
+                int wall = NEIGHBOR[dir * SQUARES + opp];
+                // Bordo del tabellone NON è un muro per i soldati
+                if (wall >= 0 && testBit(wallLo, wallHi, wall)) {
+                    capturePiece(opp);
+                }
+            }
+        }
+
+        // 2. Check Cattura RE (solo il Nero può catturare)
+        if (movedPawn == B && ((ADJACENT_LO[to] & kingLo) | (ADJACENT_HI[to] & kingHi)) != 0) {
+            int kingSq = this.kingRow * BOARD_SIZE + this.kingCol;
+
+            // Muri ostili per il Re (per posizione): Nero, Trono, Cittadella
+            long kWallLo = blackLo | THRONE_LO | CITADELS_LO;
+            long kWallHi = blackHi | THRONE_HI | CITADELS_HI;
+
+            boolean isKingCaptured;
+            if (kingSq == THRONE_SQ || testBit(ADJACENT_LO[THRONE_SQ], ADJACENT_HI[THRONE_SQ], kingSq)) {
+                // Sul trono servono 4 lati, adiacente 3 (il quarto è il trono stesso)
+                isKingCaptured = (ADJACENT_LO[kingSq] & ~kWallLo) == 0 && (ADJACENT_HI[kingSq] & ~kWallHi) == 0;
+            } else {
+                // Caso generale: cattura a 2 lati (il bordo non conta come muro)
+                isKingCaptured = isSandwiched(kingSq, 2, 3, kWallLo, kWallHi)
+                        || isSandwiched(kingSq, 0, 1, kWallLo, kWallHi);
+            }
+
+            if (isKingCaptured) {
+                capturePiece(kingSq);
+                this.kingRow = -1;
+                this.turn = Turn.BLACKWIN;
+            }
+        }
+    }
+
+    private static boolean isSandwiched(int sq, int dirA, int dirB, long wallLo, long wallHi) {
+        int a = NEIGHBOR[dirA * SQUARES + sq];
+        int b = NEIGHBOR[dirB * SQUARES + sq];
+        return a >= 0 && b >= 0 && testBit(wallLo, wallHi, a) && testBit(wallLo, wallHi, b);
+    }
+
+    /**
+     * Indica, senza eseguirla, se una mossa legale cattura almeno un pezzo o vince subito
+     * (Re su una via di fuga). Le catture dipendono solo dalla casella d'arrivo e da pezzi
+     * che la mossa non sposta: basta la posizione attuale con il pezzo già in 'to'.
+     */
+    public boolean isCaptureMove(int move) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        byte pawn = fastBoard[from];
+
+        if (pawn == K && testBit(ESCAPES_LO, ESCAPES_HI, to)) return true;
+
+        // Dopo la mossa il trono è vuoto se il Re non c'è (il Re non può atterrarci)
+        long emptyThroneLo = pawn == K ? THRONE_LO : THRONE_LO & ~kingLo;
+        long emptyThroneHi = pawn == K ? THRONE_HI : THRONE_HI & ~kingHi;
+
+        long oppLo, oppHi, wallLo, wallHi;
+        if (pawn == B) {
+            oppLo = whiteLo; oppHi = whiteHi;
+            wallLo = blackLo; wallHi = blackHi;
+        } else if (pawn == W) {
+            oppLo = blackLo; oppHi = blackHi;
+            wallLo = whiteLo | kingLo; wallHi = whiteHi | kingHi;
+        } else {
+            oppLo = blackLo; oppHi = blackHi;
+            wallLo = 0; wallHi = 0;
+        }
+        wallLo |= CITADELS_LO | emptyThroneLo;
+        wallHi |= CITADELS_HI | emptyThroneHi;
+
+        if (((ADJACENT_LO[to] & oppLo) | (ADJACENT_HI[to] & oppHi)) != 0) {
+            for (int dir = 0; dir < 4; dir++) {
+                int opp = NEIGHBOR[dir * SQUARES + to];
+                if (opp < 0 || !testBit(oppLo, oppHi, opp)) continue;
+
+                int wall = NEIGHBOR[dir * SQUARES + opp];
+                if (wall >= 0 && testBit(wallLo, wallHi, wall)) return true;
+            }
+        }
+
+        if (pawn == B && ((ADJACENT_LO[to] & kingLo) | (ADJACENT_HI[to] & kingHi)) != 0) {
+            int kingSq = this.kingRow * BOARD_SIZE + this.kingCol;
+            long kWallLo = blackLo | THRONE_LO | CITADELS_LO;
+            long kWallHi = blackHi | THRONE_HI | CITADELS_HI;
+            if (to < 64) kWallLo |= 1L << to; else kWallHi |= 1L << (to - 64);
+
+            if (kingSq == THRONE_SQ || testBit(ADJACENT_LO[THRONE_SQ], ADJACENT_HI[THRONE_SQ], kingSq)) {
+                return (ADJACENT_LO[kingSq] & ~kWallLo) == 0 && (ADJACENT_HI[kingSq] & ~kWallHi) == 0;
+            }
+            return isSandwiched(kingSq, 2, 3, kWallLo, kWallHi) || isSandwiched(kingSq, 0, 1, kWallLo, kWallHi);
+        }
+        return false;
     }
 
     /**
-     * Metodo helper per aggiornare lo Zobrist Key durante una cattura.
-     * Deve essere chiamato PRIMA di modificare il tabellone.
+     * true se il Re raggiungerebbe una via di fuga con una sola mossa (linea libera),
+     * indipendentemente da chi ha il turno.
      */
-    private void updateZobristKeyForRemoval(int r, int c) {
-        byte oldPawn = get(r, c);
-        this.zobristKey ^= zobristTable[r][c][oldPawn]; // Rimuovi pedone vecchio
-        this.zobristKey ^= zobristTable[r][c][E];     // Aggiungi pedone vuoto
+    public boolean hasKingOpenEscape() {
+        return this.kingRow != -1 && (kingRowEscapes() | kingColumnEscapes()) != 0;
     }
 
-    private void checkCaptures(int rLast, int cLast, byte movedPawn) {
-        int[][] directions = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
-        byte opponent = (movedPawn == B) ? W : B;
+    // Vie di fuga raggiungibili dal Re sulla sua riga (bit = colonna) e sulla sua colonna (bit = riga)
+    private int kingRowEscapes() {
+        int r = this.kingRow, c = this.kingCol;
+        return SLIDE_TARGETS[c * 512 + (lineOccupancy[r] | LINE_OBSTACLES[r])] & LINE_ESCAPES[r];
+    }
 
-        for (int[] dir : directions) {
-            int dr = dir[0];
-            int dc = dir[1];
+    private int kingColumnEscapes() {
+        int r = this.kingRow, c = this.kingCol;
+        return SLIDE_TARGETS[r * 512 + (lineOccupancy[BOARD_SIZE + c] | LINE_OBSTACLES[BOARD_SIZE + c])]
+                & LINE_ESCAPES[BOARD_SIZE + c];
+    }
 
-            int rOpp = rLast + dr;
-            int cOpp = cLast + dc;
+    // ----------------------------------------------------------------------
+    // TERMINI INCREMENTALI DELLA VALUTAZIONE
+    // ----------------------------------------------------------------------
 
-            if (rOpp < 0 || rOpp >= BOARD_SIZE || cOpp < 0 || cOpp >= BOARD_SIZE) continue;
+    /**
+     * Valore di un termine delle linee del Re (KING_OPEN_LINES conta le direzioni aperte).
+     * La valutazione moltiplica ogni termine per il proprio peso.
+     */
+    public int getKingLineTerm(int term) {
+        if (term == KING_OPEN_LINES) return Integer.bitCount(kingLineTerms & 0xF);
+        return (kingLineTerms >>> (4 * term)) & 0xF;
+    }
+
+    /**
+     * Maschera delle direzioni (0 = est, 1 = ovest, 2 = sud, 3 = nord) in cui il Re vede una via
+     * di fuga libera; le cittadelle e il trono vuoti non interrompono la linea.
+     */
+    public int getKingOpenLines() {
+        return kingLineTerms & 0xF;
+    }
 
-            byte opponentPawn = get(rOpp, cOpp);
+    /**
+     * @return la distanza di Manhattan del Re dalla via di fuga più vicina (0 se catturato).
+     */
+    public int getKingEscapeDistance() {
+        return this.kingRow == -1 ? 0 : ESCAPE_DISTANCE[this.kingRow * BOARD_SIZE + this.kingCol];
+    }
 
-            // 1. C'è un Soldato Avversario?
-            if (opponentPawn == opponent) {
+    /**
+     * Caselle non vuote (pezzi, Re, trono vuoto) sulla linea: [0..8] righe, [9..17] colonne.
+     */
+    public int getLineBlockers(int line) {
+        return lineBlockers[line];
+    }
 
-                int rWall = rOpp + dr;
-                int cWall = cOpp + dc;
+    private boolean touchesKingLines(int sq) {
+        return this.kingRow != -1 && (sq / BOARD_SIZE == this.kingRow || sq % BOARD_SIZE == this.kingCol);
+    }
 
-                boolean isWall = false;
-                if (rWall < 0 || rWall >= BOARD_SIZE || cWall < 0 || cWall >= BOARD_SIZE) {
-                    isWall = false; // Bordo del tabellone NON è un muro per i soldati
-                } else {
-                    byte wallPawn = get(rWall, cWall);
-                    // REGOLA ASHTON: Il muro può essere un alleato (movedPawn o K), il Trono (T) o una Cittadella
-                    if (wallPawn == movedPawn || (movedPawn == W && wallPawn == K) || wallPawn == T || isCitadel(rWall, cWall)) {
-                        isWall = true;
-                    }
-                }
+    // Anche il Re catturato conta: kingRow == -1 rende vero il controllo
+    private boolean capturesTouchKingLines() {
+        for (int i = 0, n = lastCaptures >>> 28; i < n; i++) {
+            int sq = (lastCaptures >>> (7 * i)) & 0x7F;
+            if (this.kingRow == -1 || touchesKingLines(sq)) return true;
+        }
+        return false;
+    }
 
-                if (isWall) {
-                    // Aggiorna hash prima di rimuovere
-                    updateZobristKeyForRemoval(rOpp, cOpp);
+    private int computeKingLineTerms() {
+        if (this.kingRow == -1) return 0;
+        int r = this.kingRow, c = this.kingCol;
+        return kingRayTerms(r, c, true, 0) + kingRayTerms(r, c, false, 1)
+                + kingRayTerms(BOARD_SIZE + c, r, true, 2) + kingRayTerms(BOARD_SIZE + c, r, false, 3);
+    }
 
-                    if (get(rOpp, cOpp) == W) whitePawnsCount--;
-                    if (get(rOpp, cOpp) == B) blackPawnsCount--;
-                    set(rOpp, cOpp, E);
-                }
-            }
-            // 2. Check Cattura RE
-            else if (opponentPawn == K) {
-                if (movedPawn != B) continue; // Solo il Nero può catturare
-
-                int wallCount = 0;
-                int[][] kingDirections = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
-
-                for (int[] kDir : kingDirections) {
-                    int rKWall = rOpp + kDir[0];
-                    int cKWall = cOpp + kDir[1];
-
-                    // REGOLA ASHTON: Il bordo del tabellone NON conta come muro per il Re
-                    if (rKWall < 0 || rKWall >= BOARD_SIZE || cKWall < 0 || cKWall >= BOARD_SIZE) {
-                        continue;
-                    }
-
-                    byte kWall = get(rKWall, cKWall);
-                    // Muro per il Re è: Pedone Nero (B), Trono (T), o Cittadella
-                    if (kWall == B || kWall == T || isCitadel(rKWall, cKWall)) {
-                        wallCount++;
-                    }
-                }
+    /**
+     * Termini di un raggio dal Re lungo la linea: il raggio si ferma sul primo pezzo o sulla prima
+     * via di fuga libera; le cittadelle vuote attraversate prima sono contate.
+     */
+    private int kingRayTerms(int line, int pos, boolean ascending, int dir) {
+        int occupied = lineOccupancy[line];
+        int stops = occupied | LINE_ESCAPES[line];
+        int beyond = ascending ? ~((2 << pos) - 1) & 0x1FF : (1 << pos) - 1;
+        int ahead = stops & beyond;
+
+        int stop = -1;
+        int passed = beyond;
+        if (ahead != 0) {
+            stop = ascending ? Integer.numberOfTrailingZeros(ahead) : 31 - Integer.numberOfLeadingZeros(ahead);
+            passed &= ascending ? (1 << stop) - 1 : ~((2 << stop) - 1);
+        }
 
-                boolean isKingCaptured = false;
-                boolean isKingOnThrone = (rOpp == THRONE[0] && cOpp == THRONE[1]);
-                boolean isKingAdjThrone = !isKingOnThrone &&
-                        (Math.abs(rOpp - THRONE[0]) + Math.abs(cOpp - THRONE[1]) == 1);
-
-                if (isKingOnThrone && wallCount == 4) {
-                    isKingCaptured = true; // 4 lati sul Trono
-                } else if (isKingAdjThrone && wallCount == 3) {
-                    isKingCaptured = true; // 3 lati se adiacente al Trono
-                } else if (!isKingOnThrone && !isKingAdjThrone && wallCount == 2) {
-                    // REGOLA ASHTON: Se il re è in campo aperto (non sul trono o adiacente),
-                    // bastano 2 Neri (o 1 Nero e 1 Cittadella/Trono) per catturarlo.
-                    // La logica precedente (wallCount) copre già Nero+Cittadella/Trono.
-                    // Dobbiamo verificare la cattura 2-lati Nero-Nero.
-
-                    // Controlliamo se è una cattura N-K-N (orizzontale o verticale)
-                    int rWall = rOpp + dr;
-                    int cWall = cOpp + dc;
-                    int rWallOpp = rOpp - dr; // Muro opposto
-                    int cWallOpp = cOpp - dc; // Muro opposto
-
-                    if(get(rWall, cWall) == B && get(rWallOpp, cWallOpp) == B) {
-                        isKingCaptured = true;
-                    }
-                }
+        int terms = Integer.bitCount(passed & LINE_CITADELS[line]) << (4 * KING_EMPTY_CITADELS);
+        // Stessa condizione di evalKingPos: il trono vuoto è memorizzato come T, quindi viene
+        // attraversato senza essere contato, come nella taratura dei pesi
+        if ((passed & LINE_THRONE[line]) != 0 && fastBoard[THRONE_SQ] == E) {
+            terms += 1 << (4 * KING_EMPTY_THRONE);
+        }
+        if (stop == -1) return terms;
+        if ((occupied & (1 << stop)) == 0) return terms | (1 << dir); // Via di fuga libera
+
+        int sq = line < BOARD_SIZE ? line * BOARD_SIZE + stop : stop * BOARD_SIZE + (line - BOARD_SIZE);
+        boolean adjacent = Math.abs(stop - pos) == 1;
+        int term = fastBoard[sq] == B ? (adjacent ? KING_NEAR_BLACK : KING_FAR_BLACK)
+                : (adjacent ? KING_NEAR_WHITE : KING_FAR_WHITE);
+        return terms + (1 << (4 * term));
+    }
 
+    /**
+     * Validazione di una mossa codificata, ad esempio una killer presa da un'altra posizione.
+     */
+    public boolean isLegalMove(int move) {
+        return isLegalMove(moveFrom(move), moveTo(move));
+    }
 
-                isKingCaptured = false; // Reset
-
-                // Controlla i 4 lati del Re (rOpp, cOpp)
-                byte north = get(rOpp - 1, cOpp);
-                byte south = get(rOpp + 1, cOpp);
-                byte west = get(rOpp, cOpp - 1);
-                byte east = get(rOpp, cOpp + 1);
-
-                // Muri ostili (Nero, Trono, Cittadella)
-                boolean northWall = (north == B || (rOpp - 1 == THRONE[0] && cOpp == THRONE[1]) || isCitadel(rOpp - 1, cOpp));
-                boolean southWall = (south == B || (rOpp + 1 == THRONE[0] && cOpp == THRONE[1]) || isCitadel(rOpp + 1, cOpp));
-                boolean westWall = (west == B || (rOpp == THRONE[0] && cOpp - 1 == THRONE[1]) || isCitadel(rOpp, cOpp - 1));
-                boolean eastWall = (east == B || (rOpp == THRONE[0] && cOpp + 1 == THRONE[1]) || isCitadel(rOpp, cOpp + 1));
-
-                if (isKingOnThrone) {
-                    if (northWall && southWall && westWall && eastWall) isKingCaptured = true;
-                } else if (isKingAdjThrone) {
-                    // Adiacente, es. (3,4) (sopra il trono)
-                    if (rOpp == THRONE[0] - 1 && cOpp == THRONE[1]) {
-                        if (northWall && westWall && eastWall) isKingCaptured = true;
-                    }
-                    // (5,4) (sotto il trono)
-                    else if (rOpp == THRONE[0] + 1 && cOpp == THRONE[1]) {
-                        if (southWall && westWall && eastWall) isKingCaptured = true;
-                    }
-                    // (4,3) (a ovest del trono)
-                    else if (rOpp == THRONE[0] && cOpp == THRONE[1] - 1) {
-                        if (northWall && southWall && westWall) isKingCaptured = true;
-                    }
-                    // (4,5) (a est del trono)
-                    else if (rOpp == THRONE[0] && cOpp == THRONE[1] + 1) {
-                        if (northWall && southWall && eastWall) isKingCaptured = true;
-                    }
-                } else {
-                    // Caso generale: cattura a 2 lati
-                    if (northWall && southWall) isKingCaptured = true; // Cattura verticale
-                    if (westWall && eastWall) isKingCaptured = true;   // Cattura orizzontale
-                }
+    /**
+     * Genera solo le mosse che catturano o vincono subito (vedi isCaptureMove), senza provarle.
+     * Per il Bianco vengono prima le fughe del Re; poi, per ogni casella libera adiacente a un
+     * avversario, si risale ogni direzione fino al primo pezzo, che deve essere di chi muove.
+     * @return Il numero di mosse scritte.
+     */
+    public int generateCaptureMoves(int[] buffer, int offset) {
+        int count = offset;
+
+        long moversLo, moversHi, oppLo, oppHi;
+        if (this.turn.equals(Turn.WHITE)) {
+            moversLo = whiteLo | kingLo; moversHi = whiteHi | kingHi;
+            oppLo = blackLo; oppHi = blackHi;
+        } else if (this.turn.equals(Turn.BLACK)) {
+            moversLo = blackLo; moversHi = blackHi;
+            oppLo = whiteLo | kingLo; oppHi = whiteHi | kingHi;
+        } else {
+            return 0;
+        }
 
+        // 1. Fughe del Re
+        if (this.turn.equals(Turn.WHITE) && this.kingRow != -1) {
+            int from = this.kingRow * BOARD_SIZE + this.kingCol;
+            int rowEscapes = kingRowEscapes();
+            while (rowEscapes != 0) {
+                buffer[count++] = encodeMove(from, this.kingRow * BOARD_SIZE + Integer.numberOfTrailingZeros(rowEscapes));
+                rowEscapes &= rowEscapes - 1;
+            }
+            int colEscapes = kingColumnEscapes();
+            while (colEscapes != 0) {
+                buffer[count++] = encodeMove(from, Integer.numberOfTrailingZeros(colEscapes) * BOARD_SIZE + this.kingCol);
+                colEscapes &= colEscapes - 1;
+            }
+        }
 
-                if (isKingCaptured) {
-                    // Aggiorna hash prima di rimuovere
-                    updateZobristKeyForRemoval(rOpp, cOpp);
+        // 2. Caselle d'arrivo candidate: libere, adiacenti a un avversario, né cittadella né trono
+        long candLo = 0, candHi = 0;
+        for (long bits = oppLo; bits != 0; bits &= bits - 1) {
+            int sq = Long.numberOfTrailingZeros(bits);
+            candLo |= ADJACENT_LO[sq]; candHi |= ADJACENT_HI[sq];
+        }
+        for (long bits = oppHi; bits != 0; bits &= bits - 1) {
+            int sq = 64 + Long.numberOfTrailingZeros(bits);
+            candLo |= ADJACENT_LO[sq]; candHi |= ADJACENT_HI[sq];
+        }
+        candLo &= ~(whiteLo | blackLo | kingLo | CITADELS_LO | THRONE_LO);
+        candHi &= ~(whiteHi | blackHi | kingHi | CITADELS_HI | THRONE_HI);
+
+        while ((candLo | candHi) != 0) {
+            int to;
+            if (candLo != 0) {
+                to = Long.numberOfTrailingZeros(candLo);
+                candLo &= candLo - 1;
+            } else {
+                to = 64 + Long.numberOfTrailingZeros(candHi);
+                candHi &= candHi - 1;
+            }
 
-                    set(rOpp, cOpp, E);
-                    this.kingRow = -1;
-                    this.turn = Turn.BLACKWIN;
+            for (int dir = 0; dir < 4; dir++) {
+                int from = NEIGHBOR[dir * SQUARES + to];
+                while (from >= 0 && fastBoard[from] == E && (SQUARE_FLAGS[from] & SQ_CITADEL) == 0) {
+                    from = NEIGHBOR[dir * SQUARES + from];
                 }
+                if (from < 0 || !testBit(moversLo, moversHi, from)) continue;
+                if (fastBoard[from] == K && testBit(ESCAPES_LO, ESCAPES_HI, to)) continue; // già tra le fughe
+
+                int move = encodeMove(from, to);
+                if (isCaptureMove(move)) buffer[count++] = move;
             }
         }
+        return count - offset;
     }
 
     /**
@@ -423,65 +911,61 @@ public class FastTablutState extends State implements Serializable {
      * @return Una lista di oggetti Action.
      */
     public List<Action> generateLegalMoves() {
-        List<Action> legalMoves = new ArrayList<>();
-        byte myPawnType = this.turn.equals(Turn.WHITE) ? W : B;
+        int[] moves = new int[MAX_MOVES];
+        int count = generateMoves(moves, 0);
 
-        for (int r = 0; r < BOARD_SIZE; r++) {
-            for (int c = 0; c < BOARD_SIZE; c++) {
-                byte pawn = get(r, c);
-
-                // Controlla se la pedina appartiene al giocatore di turno
-                if (pawn == myPawnType || (pawn == K && this.turn.equals(Turn.WHITE))) {
-
-                    int[][] directions = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
-
-                    // Itera per le 4 direzioni
-                    for (int[] dir : directions) {
-                        int dr = dir[0];
-                        int dc = dir[1];
-
-                        // Itera per la lunghezza della mossa
-                        for (int steps = 1; steps < BOARD_SIZE; steps++) {
-                            int rTo = r + dr * steps;
-                            int cTo = c + dc * steps;
-
-                            // Fuori dal tabellone, cambia direzione
-                            if (rTo < 0 || rTo >= BOARD_SIZE || cTo < 0 || cTo >= BOARD_SIZE) break;
-
-                            // 1. Controllo ostacoli/destinazione occupata
-                            if (get(rTo, cTo) != E) break;
-
-                            // 2. Controllo Percorso (necessario per Trono/Cittadelle bloccanti)
-                            // NOTA: isPathClear controlla da (r,c) a (rTo, cTo) ESCLUDENDO (rTo, cTo)
-                            if (!isPathClear(r, c, rTo, cTo, pawn)) break;
-
-                            // 3. Controllo Restrizioni di Arrivo (come in applyMove)
-                            if (rTo == THRONE[0] && cTo == THRONE[1]) {
-                                if (pawn != K) break; // Solo il Re può atterrare sul trono
-                            } else if (isCitadel(rTo, cTo)) {
-                                if (pawn != K) {
-                                    break; // Pedoni (W/B) non possono atterrare su cittadelle
-                                } else { // Re (K):
-                                    if (!containsCoord(ESCAPES, rTo, cTo)) {
-                                        break; // Re non può atterrare su Cittadella NON-Escape
-                                    }
-                                }
-                            }
-
-                            // Se tutti i controlli passano, la mossa è legale
-                            try {
-                                String from = getBox(r, c);
-                                String to = getBox(rTo, cTo);
-                                legalMoves.add(new Action(from, to, this.getTurn()));
-                            } catch (IOException e) { /* Ignora (non dovrebbe mai accadere) */ }
-                        }
-                    }
-                }
-            }
+        List<Action> legalMoves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            legalMoves.add(toAction(moves[i]));
         }
         return legalMoves;
     }
 
+    /**
+     * Genera le mosse legali codificate come int nel buffer del chiamante, a partire da offset.
+     * Per ogni pezzo bastano due accessi a SLIDE_TARGETS (riga e colonna), indicizzati
+     * dall'occupazione a 9 bit della linea unita agli ostacoli fissi.
+     * @return Il numero di mosse scritte.
+     */
+    public int generateMoves(int[] buffer, int offset) {
+        int count = offset;
+
+        long moversLo, moversHi;
+        if (this.turn.equals(Turn.WHITE)) {
+            moversLo = whiteLo | kingLo; moversHi = whiteHi | kingHi;
+        } else {
+            moversLo = blackLo; moversHi = blackHi;
+        }
+
+        while ((moversLo | moversHi) != 0) {
+            int from;
+            if (moversLo != 0) {
+                from = Long.numberOfTrailingZeros(moversLo);
+                moversLo &= moversLo - 1;
+            } else {
+                from = 64 + Long.numberOfTrailingZeros(moversHi);
+                moversHi &= moversHi - 1;
+            }
+            int r = from / BOARD_SIZE, c = from % BOARD_SIZE;
+
+            // Destinazioni sulla riga
+            int targets = SLIDE_TARGETS[c * 512 + (lineOccupancy[r] | LINE_OBSTACLES[r])];
+            int rowBase = r * BOARD_SIZE;
+            while (targets != 0) {
+                buffer[count++] = encodeMove(from, rowBase + Integer.numberOfTrailingZeros(targets));
+                targets &= targets - 1;
+            }
+
+            // Destinazioni sulla colonna
+            targets = SLIDE_TARGETS[r * 512 + (lineOccupancy[BOARD_SIZE + c] | LINE_OBSTACLES[BOARD_SIZE + c])];
+            while (targets != 0) {
+                buffer[count++] = encodeMove(from, Integer.numberOfTrailingZeros(targets) * BOARD_SIZE + c);
+                targets &= targets - 1;
+            }
+        }
+        return count - offset;
+    }
+
 
     // --- Metodi di compatibilità Framework ---
 
@@ -508,14 +992,10 @@ public class FastTablutState extends State implements Serializable {
         byte old = get(row, column);
         if (old == E || old == T) return; // Non rimuovere caselle vuote
 
-        // MODIFICA ZOBRIST: Aggiorna hash prima di rimuovere
-        updateZobristKeyForRemoval(row, column);
-
-        if (old == W) whitePawnsCount--;
-        if (old == B) blackPawnsCount--;
+        // MODIFICA ZOBRIST: Aggiorna hash, contatori e bitboard
+        capturePiece(row * BOARD_SIZE + column);
         if (old == K) kingRow = -1;
-
-        set(row, column, E);
+        this.kingLineTerms = computeKingLineTerms();
     }
 
     @Override
@@ -560,4 +1040,4 @@ public class FastTablutState extends State implements Serializable {
         // return Arrays.equals(fastBoard, other.fastBoard);
         return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
+import it.unibo.ai.didattica.competition.tablut.domain.StateTablut;
+
+/**
+ * Partite casuali a seme fisso condivise dai test: ogni test riceve le posizioni giocate
+ * e vi esegue solo le proprie verifiche.
+ */
+final class RandomPlayouts {
+
+	static final long SEED = 20240611L;
+	static final int GAMES = 200;
+	static final int MAX_PLIES = 100; // Sotto la profondità massima dello stack di undo
+
+	/**
+	 * Verifiche su una posizione in gioco, prima della mossa scelta dalla partita.
+	 * La posizione va restituita come la si è ricevuta.
+	 */
+	interface Visitor {
+		void position(FastTablutState state, int[] moves, int count, int chosenMove, String where);
+
+		/** Fine della partita, con lo stack di undo di tutte le mosse giocate. */
+		default void gameOver(FastTablutState state, String where) {
+		}
+	}
+
+	private RandomPlayouts() {
+	}
+
+	static void play(Visitor visitor) {
+		play(SEED, GAMES, visitor);
+	}
+
+	static void play(long seed, int games, Visitor visitor) {
+		Random random = new Random(seed);
+		int[] moves = new int[FastTablutState.MAX_MOVES];
+
+		for (int game = 0; game < games; game++) {
+			FastTablutState state = initialState();
+			int ply = 0;
+			for (; ply < MAX_PLIES && isPlaying(state); ply++) {
+				int count = state.generateMoves(moves, 0);
+				if (count == 0) break;
+
+				int move = moves[random.nextInt(count)];
+				visitor.position(state, moves, count, move, "partita " + game + ", semimossa " + ply);
+				assertTrue(state.makeMove(move));
+			}
+			visitor.gameOver(state, "partita " + game + ", fine alla semimossa " + ply);
+		}
+	}
+
+	/**
+	 * Una posizione in gioco ogni interval semimosse, fino a count posizioni.
+	 */
+	static List<FastTablutState> positions(int count, int interval) {
+		List<FastTablutState> positions = new ArrayList<>();
+		int[] visited = new int[1];
+		play(SEED, GAMES, (state, moves, moveCount, chosenMove, where) -> {
+			if (positions.size() < count && ++visited[0] % interval == 0) {
+				positions.add(state.clone());
+			}
+		});
+		assertEquals(count, positions.size(), "partite casuali troppo corte");
+		return positions;
+	}
+
+	static FastTablutState initialState() {
+		StateTablut state = new StateTablut();
+		state.setTurn(Turn.WHITE);
+		return FastTablutState.fromState(state);
+	}
+
+	static boolean isPlaying(FastTablutState state) {
+		return state.getTurn().equals(Turn.WHITE) || state.getTurn().equals(Turn.BLACK);
+	}
+}
@@ -0,0 +1,50 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
+
+class TestFastTablutStateCaptureMoves {
+
+	@Test
+	void testCaptureMovesAreTheCaptureSubsetOfAllMoves() {
+		int[] captures = new int[FastTablutState.MAX_MOVES];
+		int[] checkedCaptures = new int[1];
+
+		RandomPlayouts.play((state, moves, count, chosenMove, where) -> {
+			int[] expected = new int[count];
+			int expectedCount = 0;
+			for (int i = 0; i < count; i++) {
+				if (state.isCaptureMove(moves[i])) expected[expectedCount++] = moves[i];
+			}
+			int captureCount = state.generateCaptureMoves(captures, 0);
+
+			// Stesso insieme di mosse (l'ordine di generazione può differire), senza duplicati
+			int[] generated = Arrays.copyOf(captures, captureCount);
+			Arrays.sort(generated);
+			int[] subset = Arrays.copyOf(expected, expectedCount);
+			Arrays.sort(subset);
+			assertArrayEquals(subset, generated, where);
+			checkedCaptures[0] += captureCount;
+		});
+		assertTrue(checkedCaptures[0] > 0, "le partite casuali non hanno prodotto catture");
+	}
+
+	@Test
+	void testIsCaptureMoveMatchesPlayedMove() {
+		RandomPlayouts.play((state, moves, count, chosenMove, where) -> {
+			Turn win = state.getTurn().equals(Turn.WHITE) ? Turn.WHITEWIN : Turn.BLACKWIN;
+			for (int i = 0; i < count; i++) {
+				boolean predicted = state.isCaptureMove(moves[i]);
+				assertTrue(state.makeMove(moves[i]));
+				// Il Re catturato chiude la partita: vale come cattura anche senza altri pezzi presi
+				boolean actual = state.getLastCaptureCount() > 0 || state.getTurn().equals(win);
+				state.unmakeMove();
+				assertEquals(actual, predicted, where + ", mossa " + i);
+			}
+		});
+	}
+}
@@ -0,0 +1,153 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Pawn;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
+import it.unibo.ai.didattica.competition.tablut.domain.StateTablut;
+
+class TestFastTablutStateKingLineTerms {
+
+	// Direzioni dei raggi del Re nello stesso ordine dei bit di getKingOpenLines: est, ovest, sud, nord
+	private static final int[][] DIRECTIONS = { {0, 1}, {0, -1}, {1, 0}, {-1, 0} };
+
+	@Test
+	void testEmptyThroneOnKingRowIsCrossedNotCounted() {
+		// Re in c5: verso est attraversa d5, il trono vuoto e5, f5 e g5, poi le cittadelle h5 e i5;
+		// verso ovest le cittadelle b5 e a5. Il trono non ferma il raggio e non è contato (come evalKingPos)
+		FastTablutState state = position(Turn.WHITE, new int[] {4, 2});
+
+		assertEquals(0, state.getKingLineTerm(FastTablutState.KING_EMPTY_THRONE));
+		assertEquals(4, state.getKingLineTerm(FastTablutState.KING_EMPTY_CITADELS));
+	}
+
+	@Test
+	void testEmptyThroneOnKingColumnIsCrossedNotCounted() {
+		FastTablutState state = position(Turn.BLACK, new int[] {2, 4});
+
+		assertEquals(0, state.getKingLineTerm(FastTablutState.KING_EMPTY_THRONE));
+		assertEquals(4, state.getKingLineTerm(FastTablutState.KING_EMPTY_CITADELS));
+	}
+
+	@Test
+	void testThroneBehindBlocker() {
+		// Il raggio si ferma sul pezzo in d5: il trono resta oltre
+		FastTablutState state = position(Turn.WHITE, new int[] {4, 2}, new int[] {4, 3});
+
+		assertEquals(0, state.getKingLineTerm(FastTablutState.KING_EMPTY_THRONE));
+		assertEquals(1, state.getKingLineTerm(FastTablutState.KING_NEAR_BLACK));
+	}
+
+	@Test
+	void testKingOnThrone() {
+		FastTablutState state = position(Turn.WHITE, new int[] {4, 4});
+
+		assertEquals(0, state.getKingLineTerm(FastTablutState.KING_EMPTY_THRONE));
+	}
+
+	@Test
+	void testIncrementalTermsMatchRecomputation() {
+		RandomPlayouts.play(new RandomPlayouts.Visitor() {
+			@Override
+			public void position(FastTablutState state, int[] moves, int count, int chosenMove, String where) {
+				// Ogni figlio, comprese catture e fughe del Re, poi il ritorno con unmakeMove
+				for (int i = 0; i < count; i++) {
+					assertTrue(state.makeMove(moves[i]));
+					assertTermsMatch(state, where + ", mossa " + i);
+					state.unmakeMove();
+				}
+				assertTermsMatch(state, where + ", dopo unmake");
+			}
+
+			@Override
+			public void gameOver(FastTablutState state, String where) {
+				assertTermsMatch(state, where);
+			}
+		});
+	}
+
+	/**
+	 * Confronta i termini mantenuti in modo incrementale con quelli ricalcolati da zero
+	 * camminando casella per casella dal Re, senza le maschere di linea di FastTablutState.
+	 */
+	private static void assertTermsMatch(FastTablutState state, String where) {
+		int[] expected = new int[FastTablutState.KING_LINE_TERMS];
+		int openLines = 0;
+		if (state.kingRow != -1) {
+			for (int dir = 0; dir < DIRECTIONS.length; dir++) {
+				for (int steps = 1; ; steps++) {
+					int r = state.kingRow + DIRECTIONS[dir][0] * steps;
+					int c = state.kingCol + DIRECTIONS[dir][1] * steps;
+					if (r < 0 || r >= 9 || c < 0 || c >= 9) break;
+
+					byte pawn = state.get(r, c);
+					// Il trono vuoto si attraversa senza contarlo
+					if (pawn == FastTablutState.T) continue;
+					if (pawn == FastTablutState.E) {
+						if (FastTablutState.isEscape(r, c)) {
+							openLines |= 1 << dir;
+							break;
+						}
+						if (FastTablutState.isCitadel(r, c)) expected[FastTablutState.KING_EMPTY_CITADELS]++;
+						continue;
+					}
+					boolean adjacent = steps == 1;
+					if (pawn == FastTablutState.B) {
+						expected[adjacent ? FastTablutState.KING_NEAR_BLACK : FastTablutState.KING_FAR_BLACK]++;
+					} else {
+						expected[adjacent ? FastTablutState.KING_NEAR_WHITE : FastTablutState.KING_FAR_WHITE]++;
+					}
+					break;
+				}
+			}
+		}
+		expected[FastTablutState.KING_OPEN_LINES] = Integer.bitCount(openLines);
+
+		for (int term = 0; term < FastTablutState.KING_LINE_TERMS; term++) {
+			assertEquals(expected[term], state.getKingLineTerm(term), where + ", termine " + term);
+		}
+		assertEquals(openLines, state.getKingOpenLines(), where);
+		assertEquals(escapeDistance(state), state.getKingEscapeDistance(), where);
+
+		for (int i = 0; i < 9; i++) {
+			int rowBlockers = 0, columnBlockers = 0;
+			for (int j = 0; j < 9; j++) {
+				if (state.get(i, j) != FastTablutState.E) rowBlockers++;
+				if (state.get(j, i) != FastTablutState.E) columnBlockers++;
+			}
+			assertEquals(rowBlockers, state.getLineBlockers(i), where + ", riga " + i);
+			assertEquals(columnBlockers, state.getLineBlockers(9 + i), where + ", colonna " + i);
+		}
+	}
+
+	private static int escapeDistance(FastTablutState state) {
+		if (state.kingRow == -1) return 0;
+		int best = Integer.MAX_VALUE;
+		for (int[] escape : FastTablutState.ESCAPES) {
+			best = Math.min(best, Math.abs(escape[0] - state.kingRow) + Math.abs(escape[1] - state.kingCol));
+		}
+		return best;
+	}
+
+	/**
+	 * Tabellone vuoto con il Re nella casella king e pedine nere nelle altre caselle.
+	 */
+	private static FastTablutState position(Turn turn, int[] king, int[]... blackPawns) {
+		StateTablut state = new StateTablut();
+		Pawn[][] board = new Pawn[9][9];
+		for (int r = 0; r < 9; r++) {
+			for (int c = 0; c < 9; c++) {
+				board[r][c] = Pawn.EMPTY;
+			}
+		}
+		board[4][4] = Pawn.THRONE;
+		board[king[0]][king[1]] = Pawn.KING;
+		for (int[] pawn : blackPawns) {
+			board[pawn[0]][pawn[1]] = Pawn.BLACK;
+		}
+		state.setBoard(board);
+		state.setTurn(turn);
+		return FastTablutState.fromState(state);
+	}
+}
@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
+
+class TestFastTablutStateMakeUnmake {
+
+	@Test
+	void testUnmakeRestoresEveryChild() {
+		RandomPlayouts.play((state, moves, count, chosenMove, where) -> {
+			Snapshot before = new Snapshot(state);
+			for (int i = 0; i < count; i++) {
+				assertTrue(state.makeMove(moves[i]));
+				state.unmakeMove();
+				before.assertRestored(state, where + ", mossa " + i);
+			}
+		});
+	}
+
+	@Test
+	void testUnmakeUnwindsWholeGame() {
+		List<Snapshot> history = new ArrayList<>();
+		RandomPlayouts.play(new RandomPlayouts.Visitor() {
+			@Override
+			public void position(FastTablutState state, int[] moves, int count, int chosenMove, String where) {
+				history.add(new Snapshot(state));
+			}
+
+			@Override
+			public void gameOver(FastTablutState state, String where) {
+				for (int ply = history.size() - 1; ply >= 0; ply--) {
+					state.unmakeMove();
+					history.get(ply).assertRestored(state, where + ", ritorno alla semimossa " + ply);
+				}
+				history.clear();
+			}
+		});
+	}
+
+	@Test
+	void testMakeMatchesApplyMoveAndRebuild() {
+		RandomPlayouts.play((state, moves, count, move, where) -> {
+			FastTablutState applied = state.clone();
+			assertTrue(applied.applyMove(move));
+			assertTrue(state.makeMove(move));
+			new Snapshot(applied).assertRestored(state, where);
+			// Stato ricostruito da zero dal solo tabellone: stessa chiave, stesse bitboard.
+			// Solo a partita in corso: nelle posizioni finali la chiave conserva il turno di chi ha vinto
+			if (RandomPlayouts.isPlaying(state)) {
+				new Snapshot(FastTablutState.fromState(state)).assertRestored(state, "ricostruzione, " + where);
+			}
+			state.unmakeMove();
+		});
+	}
+
+	/**
+	 * Tutto ciò che make/unmake devono ripristinare. Le bitboard sono private: le si controlla
+	 * attraverso la generazione delle mosse, che lavora solo su di esse.
+	 */
+	private static final class Snapshot {
+		private final byte[] board;
+		private final long zobristKey;
+		private final Turn turn;
+		private final int kingRow, kingCol, whitePawns, blackPawns;
+		private final int[] kingLineTerms = new int[FastTablutState.KING_LINE_TERMS];
+		private final int kingOpenLines;
+		private final int[] lineBlockers = new int[18];
+		private final int[] moves;
+		private final int[] captureMoves;
+
+		Snapshot(FastTablutState state) {
+			board = state.fastBoard.clone();
+			zobristKey = state.getZobristKey();
+			turn = state.getTurn();
+			kingRow = state.kingRow;
+			kingCol = state.kingCol;
+			whitePawns = state.whitePawnsCount;
+			blackPawns = state.blackPawnsCount;
+			for (int term = 0; term < kingLineTerms.length; term++) {
+				kingLineTerms[term] = state.getKingLineTerm(term);
+			}
+			kingOpenLines = state.getKingOpenLines();
+			for (int line = 0; line < lineBlockers.length; line++) {
+				lineBlockers[line] = state.getLineBlockers(line);
+			}
+			int[] buffer = new int[FastTablutState.MAX_MOVES];
+			moves = Arrays.copyOf(buffer, state.generateMoves(buffer, 0));
+			captureMoves = Arrays.copyOf(buffer, state.generateCaptureMoves(buffer, 0));
+		}
+
+		void assertRestored(FastTablutState state, String where) {
+			Snapshot after = new Snapshot(state);
+			assertArrayEquals(board, after.board, where);
+			assertEquals(zobristKey, after.zobristKey, where);
+			assertEquals(turn, after.turn, where);
+			assertEquals(kingRow, after.kingRow, where);
+			assertEquals(kingCol, after.kingCol, where);
+			assertEquals(whitePawns, after.whitePawns, where);
+			assertEquals(blackPawns, after.blackPawns, where);
+			assertArrayEquals(kingLineTerms, after.kingLineTerms, where);
+			assertEquals(kingOpenLines, after.kingOpenLines, where);
+			assertArrayEquals(lineBlockers, after.lineBlockers, where);
+			assertArrayEquals(moves, after.moves, where);
+			assertArrayEquals(captureMoves, after.captureMoves, where);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import it.unibo.ai.didattica.competition.tablut.client.AlphaBetaEngine;
+import it.unibo.ai.didattica.competition.tablut.client.HeuristicWeights;
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
+
+class TestMoveOrdering {
+
+	private static final int DEPTH = 3;
+	private static final int POSITIONS = 24;
+
+	private AlphaBetaEngine engine;
+	private List<FastTablutState> positions;
+
+	@BeforeEach
+	void setUp() {
+		engine = new AlphaBetaEngine(Turn.WHITE, HeuristicWeights.INITIAL_WEIGHTS, 16);
+		// Ricerca esatta: killer e storia possono cambiare solo l'ordine delle mosse, non il valore
+		engine.setAspirationWindow(0, 0);
+		engine.setLateMoveReductions(3, 4, 0);
+		engine.setNullMovePruning(3, 0);
+		engine.setFrontierPruning(0, 0);
+		positions = RandomPlayouts.positions(POSITIONS, 7);
+	}
+
+	@AfterEach
+	void tearDown() {
+		engine.shutdown();
+	}
+
+	@Test
+	void testHistoryFromOtherPositionsKeepsScore() {
+		int[] cold = new int[positions.size()];
+		for (int i = 0; i < positions.size(); i++) {
+			engine.clearSearchHistory();
+			cold[i] = search(positions.get(i));
+		}
+
+		// Stessa sequenza con la storia lasciata dalle posizioni precedenti
+		engine.clearSearchHistory();
+		for (int i = 0; i < positions.size(); i++) {
+			assertEquals(cold[i], search(positions.get(i)), "posizione " + i);
+		}
+	}
+
+	@Test
+	void testWarmHistoryKeepsScoreWithFewerNodes() {
+		long coldNodes = 0, warmNodes = 0;
+		for (int i = 0; i < positions.size(); i++) {
+			engine.clearSearchHistory();
+			int cold = search(positions.get(i));
+			coldNodes += engine.getSearchedNodes();
+
+			// Seconda ricerca della stessa posizione: la storia della prima anticipa i tagli
+			int warm = search(positions.get(i));
+			warmNodes += engine.getSearchedNodes();
+			assertEquals(cold, warm, "posizione " + i);
+		}
+		assertTrue(warmNodes < coldNodes, "nodi con storia " + warmNodes + ", senza " + coldNodes);
+	}
+
+	/**
+	 * Ricerca a profondità fissa a TT vuota: solo killer e storia passano da una ricerca all'altra.
+	 */
+	private int search(FastTablutState position) {
+		engine.clearTranspositionTable();
+		engine.resetSearchStats();
+		return engine.searchToDepth(position.clone(), DEPTH).getScore();
+	}
+}
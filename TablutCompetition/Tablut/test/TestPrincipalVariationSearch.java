@@ -0,0 +1,55 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import it.unibo.ai.didattica.competition.tablut.client.AlphaBetaEngine;
+import it.unibo.ai.didattica.competition.tablut.client.HeuristicWeights;
+import it.unibo.ai.didattica.competition.tablut.domain.FastTablutState;
+import it.unibo.ai.didattica.competition.tablut.domain.State.Turn;
+
+class TestPrincipalVariationSearch {
+
+	private static final int DEPTH = 3;
+	private static final int POSITIONS = 24;
+
+	private AlphaBetaEngine engine;
+
+	@BeforeEach
+	void setUp() {
+		engine = new AlphaBetaEngine(Turn.WHITE, HeuristicWeights.INITIAL_WEIGHTS, 16);
+		// Solo le ricerche esatte: senza riduzioni e potature il valore non dipende dalle finestre
+		engine.setAspirationWindow(0, 0);
+		engine.setLateMoveReductions(3, 4, 0);
+		engine.setNullMovePruning(3, 0);
+		engine.setFrontierPruning(0, 0);
+	}
+
+	@AfterEach
+	void tearDown() {
+		engine.shutdown();
+	}
+
+	@Test
+	void testPvsMatchesAlphaBetaScore() {
+		List<FastTablutState> positions = RandomPlayouts.positions(POSITIONS, 7);
+		for (int i = 0; i < positions.size(); i++) {
+			int alphaBeta = search(positions.get(i), false);
+			int pvs = search(positions.get(i), true);
+			assertEquals(alphaBeta, pvs, "posizione " + i);
+		}
+	}
+
+	/**
+	 * Ricerca a profondità fissa con TT e storia vuote, come nel benchmark.
+	 */
+	private int search(FastTablutState position, boolean principalVariation) {
+		engine.setPrincipalVariationSearch(principalVariation);
+		engine.clearTranspositionTable();
+		engine.clearSearchHistory();
+		return engine.searchToDepth(position.clone(), DEPTH).getScore();
+	}
+}